@@ -71,8 +71,37 @@ dependencies {
     testImplementation("org.yaml:snakeyaml:2.5") // mavenCentral
 }
 
+// Timing checks which would be flaky as unit tests, run with ./gradlew benchmark
+val benchmark: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+    runtimeClasspath += output + compileClasspath
+}
+// MockBukkit provides a server for benchmarks which serialize real items
+configurations[benchmark.implementationConfigurationName].extendsFrom(configurations.testImplementation.get())
+configurations[benchmark.runtimeOnlyConfigurationName].extendsFrom(configurations.testRuntimeOnly.get())
+val benchmarks = listOf(
+    "dev.jsinco.malts.storage.ObjectCacheBenchmark",
+    "dev.jsinco.malts.storage.VaultPayloadBenchmark",
+    "dev.jsinco.malts.obj.VaultContentScannerBenchmark",
+)
+
 tasks {
 
+    val runBenchmarks = benchmarks.map { benchmarkClass ->
+        register<JavaExec>("benchmark" + benchmarkClass.substringAfterLast('.').removeSuffix("Benchmark")) {
+            group = "verification"
+            description = "Runs ${benchmarkClass.substringAfterLast('.')}."
+            classpath = benchmark.runtimeClasspath
+            mainClass.set(benchmarkClass)
+        }
+    }
+
+    register("benchmark") {
+        group = "verification"
+        description = "Runs the benchmarks, these are not part of test."
+        dependsOn(runBenchmarks)
+    }
+
     runServer {
         minecraftVersion("1.21.10")
     }
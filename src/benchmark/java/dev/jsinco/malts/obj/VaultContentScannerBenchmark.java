@@ -0,0 +1,94 @@
+package dev.jsinco.malts.obj;
+
+import dev.jsinco.malts.Malts;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.mockbukkit.mockbukkit.MockBukkit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Prints how long {@link VaultContentScanner} takes over synthetic vault sets: a full scan on
+ * one thread, a full scan split across threads and a scan which stops once the first page is full.
+ * <p>
+ * Not part of {@code test}, run it with {@code ./gradlew benchmarkVaultContentScanner}.
+ */
+public final class VaultContentScannerBenchmark {
+
+    private static final int[] VAULT_COUNTS = {10, 100, 1_000, 5_000};
+    private static final int SLOTS = 54;
+    private static final int RUNS = 20;
+    private static final String QUERY = "diamond";
+
+    public static void main(String[] args) {
+        MockBukkit.mock();
+        MockBukkit.load(Malts.class);
+        // Stands in for the plugin's async scheduler
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            Random random = new Random(1);
+            // Warm up so the JIT doesn't skew the first measurement
+            List<VaultSnapshot> warmUp = syntheticVaults(500, random);
+            measureScanMillis(warmUp, Integer.MAX_VALUE, Runnable::run);
+            measureScanMillis(warmUp, Integer.MAX_VALUE, executor);
+
+            int firstPage = VaultContentScanner.limitForPage(1);
+            for (int count : VAULT_COUNTS) {
+                List<VaultSnapshot> vaults = syntheticVaults(count, random);
+                double serial = measureScanMillis(vaults, Integer.MAX_VALUE, Runnable::run);
+                double parallel = measureScanMillis(vaults, Integer.MAX_VALUE, executor);
+                double limited = measureScanMillis(vaults, firstPage, executor);
+                System.out.printf("VaultContentScanner with %,d vaults (%,d slots): %.2f ms serial, %.2f ms parallel, %.2f ms first page%n",
+                        count, count * SLOTS, serial, parallel, limited);
+            }
+        } finally {
+            executor.shutdown();
+            MockBukkit.unmock();
+        }
+    }
+
+    private static double measureScanMillis(List<VaultSnapshot> vaults, int limit, Executor executor) {
+        VaultContentScanner scanner = new VaultContentScanner(vaults, 1, null);
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            scanner.matchingVaults(QUERY, limit, executor);
+        }
+        return (System.nanoTime() - start) / 1_000_000D / RUNS;
+    }
+
+    /**
+     * Vaults with a random mix of common items, a few of them named, and some empty slots.
+     */
+    private static List<VaultSnapshot> syntheticVaults(int count, Random random) {
+        Material[] materials = {Material.STONE, Material.DIRT, Material.OAK_LOG, Material.IRON_INGOT, Material.DIAMOND, Material.GOLD_BLOCK};
+        UUID owner = UUID.randomUUID();
+        List<VaultSnapshot> vaults = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            ItemStack[] contents = new ItemStack[SLOTS];
+            for (int slot = 0; slot < SLOTS; slot++) {
+                if (random.nextInt(4) == 0) {
+                    continue; // Leave some slots empty
+                }
+                ItemStack item = new ItemStack(materials[random.nextInt(materials.length)], 1 + random.nextInt(64));
+                if (random.nextInt(10) == 0) {
+                    item.editMeta(meta -> {
+                        meta.displayName(Component.text("Named item"));
+                        meta.lore(List.of(Component.text("Some lore")));
+                    });
+                }
+                contents[slot] = item;
+            }
+
+            Vault vault = new Vault(owner, id, contents);
+            vaults.add(vault.snapshot());
+        }
+        return vaults;
+    }
+}
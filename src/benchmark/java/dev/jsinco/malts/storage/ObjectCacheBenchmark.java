@@ -0,0 +1,93 @@
+package dev.jsinco.malts.storage;
+
+import dev.jsinco.malts.obj.CachedObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Prints how long {@link ObjectCache} lookups take with 10 to 10,000 cached players.
+ * Lookup cost should stay in the same ballpark no matter how many objects are cached.
+ * <p>
+ * Not part of {@code test}, run it with {@code ./gradlew benchmark}.
+ */
+public final class ObjectCacheBenchmark {
+
+    private static final int[] PLAYER_COUNTS = {10, 100, 1_000, 10_000};
+    private static final int LOOKUPS = 2_000_000;
+
+    public static void main(String[] args) {
+        // Warm up so the JIT doesn't skew the first measurement
+        measureLookupNanos(1_000);
+
+        for (int players : PLAYER_COUNTS) {
+            double nanos = measureLookupNanos(players);
+            System.out.printf("ObjectCache lookup with %,d players (%,d objects): %.1f ns/op%n", players, players * 2, nanos);
+        }
+    }
+
+    private static double measureLookupNanos(int players) {
+        ObjectCache cache = new ObjectCache();
+        List<UUID> uuids = new ArrayList<>(players);
+        for (int i = 0; i < players; i++) {
+            UUID uuid = UUID.randomUUID();
+            uuids.add(uuid);
+            cache.putIfAbsent(new FirstType(uuid));
+            cache.putIfAbsent(new SecondType(uuid));
+        }
+
+        int found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            UUID uuid = uuids.get(i % players);
+            if (cache.get(uuid, (i & 1) == 0 ? FirstType.class : SecondType.class) != null) {
+                found++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (found != LOOKUPS) {
+            throw new IllegalStateException("Only found " + found + " of " + LOOKUPS + " cached objects");
+        }
+        return (double) elapsed / LOOKUPS;
+    }
+
+    private static class FirstType implements CachedObject {
+        private final UUID uuid;
+        private Long expire;
+
+        FirstType(UUID uuid) {
+            this.uuid = uuid;
+        }
+
+        @Override
+        public @NotNull UUID getUuid() {
+            return uuid;
+        }
+
+        @Override
+        public @Nullable Long getExpire() {
+            return expire;
+        }
+
+        @Override
+        public void setExpire(@Nullable Long expire) {
+            this.expire = expire;
+        }
+
+        @Override
+        public @NotNull CompletableFuture<Void> save(DataSource dataSource) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private static class SecondType extends FirstType {
+        SecondType(UUID uuid) {
+            super(uuid);
+        }
+    }
+}
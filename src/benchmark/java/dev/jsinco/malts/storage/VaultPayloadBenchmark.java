@@ -0,0 +1,98 @@
+package dev.jsinco.malts.storage;
+
+import dev.jsinco.malts.enums.Compression;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Material;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
+import org.mockbukkit.mockbukkit.MockBukkit;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Prints the stored row size and encode/decode time of a vault's contents as a binary
+ * {@link VaultPayload} with each {@link Compression}, against the legacy Base64 text format.
+ * Contents are real {@link ItemStack#serializeItemsAsBytes(ItemStack[])} output, timings include
+ * serializing the items since every save and load does.
+ * <p>
+ * Not part of {@code test}, run it with {@code ./gradlew benchmarkVaultPayload}.
+ */
+public final class VaultPayloadBenchmark {
+
+    private static final int SLOTS = 54;
+    private static final int[] FILLED_SLOTS = {0, 9, 27, 54};
+    private static final int ITERATIONS = 2_000;
+
+    public static void main(String[] args) {
+        MockBukkit.mock();
+        try {
+            for (int filled : FILLED_SLOTS) {
+                ItemStack[] contents = sampleVault(filled);
+                System.out.printf("%d/%d slots filled%n", filled, SLOTS);
+                measureBase64(contents);
+                for (Compression compression : Compression.values()) {
+                    measurePayload(contents, compression);
+                }
+            }
+        } finally {
+            MockBukkit.unmock();
+        }
+    }
+
+    private static void measureBase64(ItemStack[] contents) {
+        String text = Base64.getEncoder().encodeToString(ItemStack.serializeItemsAsBytes(contents));
+        long encode = time(() -> Base64.getEncoder().encodeToString(ItemStack.serializeItemsAsBytes(contents)));
+        long decode = time(() -> ItemStack.deserializeItemsFromBytes(Base64.getDecoder().decode(text)));
+        print("BASE64", text.getBytes(StandardCharsets.UTF_8).length, encode, decode);
+    }
+
+    private static void measurePayload(ItemStack[] contents, Compression compression) {
+        byte[] payload = VaultPayload.encode(ItemStack.serializeItemsAsBytes(contents), compression);
+        long encode = time(() -> VaultPayload.encode(ItemStack.serializeItemsAsBytes(contents), compression));
+        long decode = time(() -> ItemStack.deserializeItemsFromBytes(VaultPayload.decode(payload)));
+        print(compression.name(), payload.length, encode, decode);
+    }
+
+    private static void print(String format, int bytes, long encodeNanos, long decodeNanos) {
+        System.out.printf("  %-7s %,7d bytes, encode %,9d ns, decode %,9d ns%n", format, bytes, encodeNanos, decodeNanos);
+    }
+
+    private static long time(Supplier<?> supplier) {
+        // Warm up so the JIT doesn't skew the measurement
+        for (int i = 0; i < ITERATIONS / 4; i++) {
+            supplier.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            supplier.get();
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    /**
+     * A vault with stacks of common blocks and the odd named, enchanted tool, like a typical storage vault.
+     */
+    private static ItemStack[] sampleVault(int filled) {
+        Material[] blocks = {Material.COBBLESTONE, Material.OAK_LOG, Material.IRON_INGOT, Material.DIAMOND, Material.REDSTONE};
+        ItemStack[] contents = new ItemStack[SLOTS];
+        for (int slot = 0; slot < filled; slot++) {
+            if (slot % 9 == 8) {
+                int number = slot;
+                ItemStack tool = new ItemStack(Material.NETHERITE_PICKAXE);
+                tool.addUnsafeEnchantment(Enchantment.EFFICIENCY, 5);
+                tool.addUnsafeEnchantment(Enchantment.UNBREAKING, 3);
+                tool.editMeta(meta -> {
+                    meta.displayName(Component.text("Pickaxe #" + number));
+                    meta.lore(List.of(Component.text("Mined a lot of stone")));
+                });
+                contents[slot] = tool;
+            } else {
+                contents[slot] = new ItemStack(blocks[slot % blocks.length], 64 - slot % 32);
+            }
+        }
+        return contents;
+    }
+}
@@ -14,6 +14,7 @@ import dev.jsinco.malts.obj.Vault;
 import dev.jsinco.malts.obj.Warehouse;
 import dev.jsinco.malts.registry.Registry;
 import dev.jsinco.malts.storage.DataSource;
+import dev.jsinco.malts.storage.ItemLocator;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -21,6 +22,7 @@ import org.jetbrains.annotations.Nullable;
 import java.util.Collection;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * The main entry point for the Malts API.
@@ -162,6 +164,16 @@ public final class MaltsAPI {
         return getDataSource().getVaults(owner);
     }
 
+    /**
+     * Checks if the given owner has any vaults stored in the database, without loading them.
+     * @param owner The owner of the vaults
+     * @return A future that will complete with true if the owner has at least one vault, or complete exceptionally if an error occurs
+     */
+    @NotNull
+    public static CompletableFuture<@NotNull Boolean> hasVaults(UUID owner) {
+        return getDataSource().hasVaults(owner);
+    }
+
     /**
      * Saves the given vault to the database.
      * @param vault The vault to save
@@ -186,12 +198,38 @@ public final class MaltsAPI {
     /**
      * Queries the database for all vaults.
      * @return A future that will complete with a list of all vaults, or complete exceptionally if an error occurs
+     * @deprecated Loads every vault into memory at once, use {@link #forEachVault(int, Consumer)} instead
      */
     @NotNull
+    @Deprecated
     public static CompletableFuture<@NotNull Collection<Vault>> getAllVaults() {
         return getDataSource().getAllVaults();
     }
 
+    /**
+     * Streams every vault from the database, reading a batch of rows at a time.
+     * Each vault is only loaded right before it's passed to the consumer and isn't kept afterward.
+     * @param batchSize How many rows to read from the database at a time
+     * @param consumer Called with each vault from a background thread, throwing stops the stream
+     * @return A future that will complete with how many vaults were streamed, or complete exceptionally if an error occurs
+     */
+    @NotNull
+    public static CompletableFuture<@NotNull Long> forEachVault(int batchSize, Consumer<Vault> consumer) {
+        return getDataSource().forEachVault(batchSize, consumer);
+    }
+
+    /**
+     * Searches every player's vaults and warehouses for items, reading them from the database a page at a time.
+     * The search runs in the background and stops once the configured time budget is spent.
+     * @param filter What to look for
+     * @param progress Told how far along the search is every few seconds, from a background thread
+     * @return A future that will complete with everything found, or complete exceptionally if an error occurs
+     */
+    @NotNull
+    public static CompletableFuture<ItemLocator.Result> locateItems(ItemLocator.Filter filter, Consumer<ItemLocator.Progress> progress) {
+        return getDataSource().locateItems(filter, progress);
+    }
+
     /**
      * Attempts to get a cached warehouse for the given owner.
      * If not cached, it will query the database and cache the result with the default expiration time set by the config.
@@ -10,6 +10,7 @@ import dev.jsinco.malts.obj.MaltsPlayer;
 import dev.jsinco.malts.obj.Vault;
 import dev.jsinco.malts.storage.DataSource;
 import dev.jsinco.malts.utility.Couple;
+import dev.jsinco.malts.utility.Executors;
 import dev.jsinco.malts.utility.Util;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -50,12 +51,13 @@ public class EditVaultCommand implements SubCommand {
 
         if (vaultId <= 0 || option == null) return false;
 
-        dataSource.getVaultWithEconomy(player, vaultId, vault -> {
+        // The vault may have been loaded on a database thread, it's only modified and saved on the main thread
+        dataSource.getVaultWithEconomy(player, vaultId, vault -> Executors.runSync(() -> {
             boolean result = option.getExecutor().handle(dataSource, player, vault, newArgs);
             if (!result) {
                 lng.entry(l -> l.command().base().invalidUsage(), sender);
             }
-        });
+        }));
         return true;
     }
 
@@ -0,0 +1,205 @@
+package dev.jsinco.malts.commands.subcommands;
+
+import dev.jsinco.malts.Malts;
+import dev.jsinco.malts.commands.interfaces.ArgumentFlagReader;
+import dev.jsinco.malts.commands.interfaces.SubCommand;
+import dev.jsinco.malts.storage.DataSource;
+import dev.jsinco.malts.storage.ItemLocator;
+import dev.jsinco.malts.utility.Couple;
+import dev.jsinco.malts.utility.Text;
+import dev.jsinco.malts.utility.Util;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.event.ClickEvent;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static dev.jsinco.malts.storage.DataSource.DATA_FOLDER;
+
+public class LocateCommand implements SubCommand {
+
+    // More than this many matches are written to a file instead of chat
+    private static final int CHAT_LIMIT = 15;
+    private static final String RESULTS_FOLDER = "locate";
+    private static final DateTimeFormatter FILE_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+
+    // Every vault is read, so only one search runs at a time
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Override
+    public boolean execute(Malts plugin, CommandSender sender, String label, List<String> args) {
+        ArgumentFlagReader reader = new ArgumentFlagReader(args);
+        String materialArg = reader.getFlagValue("material");
+        String nameArg = reader.getFlagValue("name");
+        String loreArg = reader.getFlagValue("lore");
+
+        Material material = null;
+        if (materialArg != null) {
+            material = Material.matchMaterial(materialArg);
+            if (material == null) {
+                lng.entry(l -> l.command().locate().invalidMaterial(), sender, Couple.of("{material}", materialArg));
+                return true;
+            }
+        }
+
+        Pattern name;
+        Pattern lore;
+        try {
+            name = compile(nameArg);
+            lore = compile(loreArg);
+        } catch (PatternSyntaxException e) {
+            lng.entry(l -> l.command().locate().invalidPattern(), sender,
+                    Couple.of("{pattern}", e.getPattern()),
+                    Couple.of("{error}", e.getDescription()));
+            return true;
+        }
+
+        ItemLocator.Filter filter = new ItemLocator.Filter(material, name, lore);
+        if (filter.isEmpty()) {
+            lng.entry(l -> l.command().locate().noFilter(), sender);
+            return true;
+        }
+        if (!running.compareAndSet(false, true)) {
+            lng.entry(l -> l.command().locate().alreadyRunning(), sender);
+            return true;
+        }
+
+        lng.entry(l -> l.command().locate().started(), sender);
+        DataSource.getInstance().locateItems(filter, progress -> lng.entry(l -> l.command().locate().progress(), sender,
+                Couple.of("{vaults}", progress.vaultsScanned()),
+                Couple.of("{totalVaults}", progress.totalVaults()),
+                Couple.of("{matches}", progress.matches()),
+                Couple.of("{seconds}", progress.elapsedMillis() / 1000)
+        )).whenComplete((result, throwable) -> {
+            running.set(false);
+            if (result != null) {
+                this.report(sender, args, result);
+            } else {
+                // Failed queries complete with null after logging their error
+                if (throwable != null) {
+                    Text.error("Failed to locate items", throwable);
+                }
+                lng.entry(l -> l.command().locate().failed(), sender);
+            }
+        });
+        return true;
+    }
+
+    private void report(CommandSender sender, List<String> args, ItemLocator.Result result) {
+        List<ItemLocator.Match> matches = result.matches();
+        Map<UUID, String> names = new HashMap<>();
+
+        if (matches.size() > CHAT_LIMIT) {
+            Path file = DATA_FOLDER.resolve(RESULTS_FOLDER).resolve(LocalDateTime.now().format(FILE_NAME_FORMAT) + ".txt");
+            List<String> lines = new ArrayList<>(matches.size() + 1);
+            lines.add("# /malts locate " + String.join(" ", args));
+            for (ItemLocator.Match match : matches) {
+                String owner = ownerName(names, match.owner()) + " (" + match.owner() + ")";
+                lines.add(match.kind() == ItemLocator.Match.Kind.VAULT
+                        ? owner + "\tvault " + match.vaultId() + "\tslot " + match.slot() + "\t" + match.material() + " x" + match.amount() + "\t" + match.itemName()
+                        : owner + "\twarehouse\t\t" + match.material() + " x" + match.amount());
+            }
+            try {
+                Files.createDirectories(file.getParent());
+                Files.write(file, lines);
+                lng.entry(l -> l.command().locate().writtenToFile(), sender, Couple.of("{file}", DATA_FOLDER.relativize(file)));
+            } catch (IOException e) {
+                Text.error("Failed to write located items to " + file, e);
+            }
+        } else {
+            for (ItemLocator.Match match : matches) {
+                sender.sendMessage(this.formatMatch(match, ownerName(names, match.owner())));
+            }
+        }
+
+        lng.entry(l -> result.timedOut() ? l.command().locate().timedOut() : l.command().locate().finished(), sender,
+                Couple.of("{matches}", matches.size()),
+                Couple.of("{vaults}", result.vaultsScanned()),
+                Couple.of("{totalVaults}", result.totalVaults()),
+                Couple.of("{warehouses}", result.warehousesScanned()),
+                Couple.of("{seconds}", result.elapsedMillis() / 1000)
+        );
+    }
+
+    private Component formatMatch(ItemLocator.Match match, String ownerName) {
+        if (match.kind() == ItemLocator.Match.Kind.WAREHOUSE) {
+            return lng.entry(l -> l.command().locate().warehouseResult(), "",
+                    Couple.of("{name}", ownerName),
+                    Couple.of("{material}", Util.formatEnumerator(match.material())),
+                    Couple.of("{amount}", match.amount())
+            ).clickEvent(ClickEvent.runCommand("malts warehouseadmin " + ownerName));
+        }
+        return lng.entry(l -> l.command().locate().vaultResult(), "",
+                Couple.of("{name}", ownerName),
+                Couple.of("{id}", match.vaultId()),
+                Couple.of("{slot}", match.slot()),
+                Couple.of("{itemName}", match.itemName()),
+                Couple.of("{amount}", match.amount())
+        ).clickEvent(ClickEvent.runCommand("malts vaultadmin open " + ownerName + " " + match.vaultId()));
+    }
+
+    @Override
+    public List<String> tabComplete(Malts plugin, CommandSender sender, String label, List<String> args) {
+        if (args.size() > 1 && args.get(args.size() - 2).equalsIgnoreCase("-material")) {
+            String typed = args.getLast().toLowerCase();
+            return Arrays.stream(Material.values())
+                    .filter(Material::isItem)
+                    .map(material -> material.name().toLowerCase())
+                    .filter(material -> material.startsWith(typed))
+                    .toList();
+        } else if (args.size() > 1 && args.get(args.size() - 2).startsWith("-")) {
+            return List.of();
+        }
+
+        List<String> completions = new ArrayList<>();
+        for (String flag : List.of("-material", "-name", "-lore")) {
+            if (!args.contains(flag)) {
+                completions.add(flag);
+            }
+        }
+        return completions;
+    }
+
+    @Override
+    public String permission() {
+        return "malts.command.locate";
+    }
+
+    @Override
+    public boolean playerOnly() {
+        return false;
+    }
+
+    @Override
+    public String name() {
+        return "locate";
+    }
+
+    @Nullable
+    private static Pattern compile(@Nullable String pattern) {
+        return pattern != null ? Pattern.compile(pattern, Pattern.CASE_INSENSITIVE) : null;
+    }
+
+    private static String ownerName(Map<UUID, String> names, UUID owner) {
+        return names.computeIfAbsent(owner, uuid -> {
+            String name = Bukkit.getOfflinePlayer(uuid).getName();
+            return name != null ? name : uuid.toString();
+        });
+    }
+}
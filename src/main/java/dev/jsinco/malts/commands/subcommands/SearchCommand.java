@@ -3,19 +3,32 @@ package dev.jsinco.malts.commands.subcommands;
 import dev.jsinco.malts.Malts;
 import dev.jsinco.malts.commands.interfaces.ArgumentFlagReader;
 import dev.jsinco.malts.commands.interfaces.SubCommand;
+import dev.jsinco.malts.configuration.IntPair;
+import dev.jsinco.malts.obj.SnapshotVault;
 import dev.jsinco.malts.obj.Vault;
 import dev.jsinco.malts.obj.VaultContentScanner;
+import dev.jsinco.malts.obj.VaultSlot;
 import dev.jsinco.malts.storage.DataSource;
+import dev.jsinco.malts.storage.SearchSessions;
 import dev.jsinco.malts.utility.Couple;
+import dev.jsinco.malts.utility.Executors;
 import dev.jsinco.malts.utility.Util;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 
 public class SearchCommand implements SubCommand {
@@ -37,30 +50,105 @@ public class SearchCommand implements SubCommand {
             return true;
         }
 
-        dataSource.getVaults(player.getUniqueId()).thenAccept(snapshotVaults -> {
-            String name = player != sender ? player.getName() : null;
-            List<Vault> vaults = snapshotVaults.stream()
-                    .map(v -> v.toVault().join())
+        UUID owner = player.getUniqueId();
+        String name = player != sender ? player.getName() : null;
+        SearchSessions sessions = dataSource.getSearchSessions();
+        String sessionKey = sender instanceof Player p ? p.getUniqueId().toString() : sender.getName();
+
+        // Paging through the last search only loads the vaults on the new page
+        List<VaultSlot> cached = sessions.get(sessionKey, owner, searchTerm);
+        if (cached != null) {
+            this.sendPage(sender, owner, name, searchTerm, page, cached);
+            return true;
+        }
+
+        long startedAt = sessions.startSearch();
+        dataSource.getVaults(owner).thenAccept(snapshotVaults -> {
+            Set<Integer> accessible = snapshotVaults.stream()
                     .filter(v -> {
                         if (sender instanceof Player p) {
                             return v.canAccess(p);
                         }
                         return true; // Console can access all vaults
                     })
-                    .toList();
+                    .map(SnapshotVault::getId)
+                    .collect(Collectors.toSet());
 
-            if (vaults.isEmpty()) {
+            if (accessible.isEmpty()) {
                 lng.entry(l -> l.command().search().noAccessibleVaults(), sender, Couple.of("{name}", name));
                 return;
             }
 
-            VaultContentScanner scanner = new VaultContentScanner(vaults, page, name);
-            VaultContentScanner.ResultCollection results = scanner.matchingVaults(searchTerm);
-            sender.sendMessage(results.queryResultSummary());
+            // Vaults saved before the index existed may not be in it yet
+            if (!dataSource.isVaultIndexComplete()) {
+                List<CompletableFuture<Vault>> loading = snapshotVaults.stream()
+                        .filter(v -> accessible.contains(v.getId()))
+                        .map(SnapshotVault::toVault)
+                        .toList();
+                // Composed rather than joined, this runs on a database thread the loads need too
+                CompletableFuture.allOf(loading.toArray(new CompletableFuture[0]))
+                        // Snapshots are taken where the vaults are modified, the scan then reads only those
+                        .thenCompose(unused -> Executors.supplySync(() -> loading.stream()
+                                .map(CompletableFuture::join)
+                                .filter(Objects::nonNull)
+                                .map(Vault::snapshot)
+                                .toList()))
+                        .thenAcceptAsync(snapshots -> {
+                            VaultContentScanner scanner = new VaultContentScanner(snapshots, page, name);
+                            // Only scans until this page is full, later pages scan further
+                            int limit = VaultContentScanner.limitForPage(page);
+                            sender.sendMessage(scanner.matchingVaults(searchTerm, limit, Executors.asyncExecutor()).queryResultSummary());
+                        }, Executors.asyncExecutor());
+                return;
+            }
+
+            dataSource.searchVaults(owner, searchTerm).thenAccept(slots -> {
+                List<VaultSlot> matches = (slots != null ? slots : List.<VaultSlot>of()).stream()
+                        .filter(slot -> accessible.contains(slot.id()))
+                        .toList();
+                sessions.put(sessionKey, owner, searchTerm, matches, startedAt);
+                this.sendPage(sender, owner, name, searchTerm, page, matches);
+            });
         });
         return true;
     }
 
+    /**
+     * Shows a page of matches found through the content index.
+     * Only vaults with a match on the page are loaded, to show the matching items.
+     */
+    private void sendPage(CommandSender sender, UUID owner, @Nullable String name, String searchTerm, int page, List<VaultSlot> matches) {
+        DataSource dataSource = DataSource.getInstance();
+        int perPage = VaultContentScanner.rangeForPage(1).b();
+        int lastPage = Math.max(1, (int) Math.ceil((double) matches.size() / perPage));
+        IntPair range = VaultContentScanner.rangeForPage(Math.min(page, lastPage));
+        List<VaultSlot> onPage = matches.subList(Math.min(range.a() - 1, matches.size()), Math.min(range.b(), matches.size()));
+
+        Map<Integer, List<Integer>> slotsByVault = new LinkedHashMap<>();
+        for (VaultSlot slot : onPage) {
+            slotsByVault.computeIfAbsent(slot.id(), id -> new ArrayList<>()).add(slot.slot());
+        }
+        List<CompletableFuture<Vault>> vaults = slotsByVault.keySet().stream()
+                .map(id -> dataSource.getVault(owner, id))
+                .toList();
+
+        CompletableFuture.allOf(vaults.toArray(new CompletableFuture[0])).thenRun(() -> {
+            List<VaultContentScanner.Result> results = new ArrayList<>();
+            for (CompletableFuture<Vault> future : vaults) {
+                Vault vault = future.join();
+                ItemStack[] contents = vault.getInventory().getContents();
+                List<ItemStack> items = slotsByVault.get(vault.getId()).stream()
+                        .filter(slot -> slot < contents.length && contents[slot] != null)
+                        .map(slot -> contents[slot])
+                        .toList();
+                if (!items.isEmpty()) {
+                    results.add(new VaultContentScanner.Result(vault, items, name));
+                }
+            }
+            sender.sendMessage(new VaultContentScanner.ResultCollection(results, range, searchTerm, name, matches.size()).queryResultSummary());
+        });
+    }
+
     @Override
     public List<String> tabComplete(Malts plugin, CommandSender sender, String label, List<String> args) {
         if (args.size() > 1) {
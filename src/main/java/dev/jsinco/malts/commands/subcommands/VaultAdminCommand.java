@@ -16,7 +16,9 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -117,12 +119,15 @@ public class VaultAdminCommand implements SubCommand {
 
                 dataSource.deleteVaults(offlinePlayer.getUniqueId()).join();
                 dataSource.deleteVaults(otherPlayer.getUniqueId()).join();
+                // Queue every save first so they're written together
+                List<CompletableFuture<Void>> saves = new ArrayList<>();
                 for (Vault vault : player1Vaults) {
-                    dataSource.saveVault(vault.copy(otherPlayer.getUniqueId())).join();
+                    saves.add(dataSource.saveVault(vault.copy(otherPlayer.getUniqueId())));
                 }
                 for (Vault vault : player2Vaults) {
-                    dataSource.saveVault(vault.copy(offlinePlayer.getUniqueId())).join();
+                    saves.add(dataSource.saveVault(vault.copy(offlinePlayer.getUniqueId())));
                 }
+                CompletableFuture.allOf(saves.toArray(CompletableFuture[]::new)).join();
                 lng.entry(
                         l -> l.vaults().transferred(),
                         sender,
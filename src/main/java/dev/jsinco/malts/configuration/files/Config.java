@@ -2,8 +2,10 @@ package dev.jsinco.malts.configuration.files;
 
 import dev.jsinco.malts.configuration.OkaeriFile;
 import dev.jsinco.malts.configuration.OkaeriFileName;
+import dev.jsinco.malts.enums.Compression;
 import dev.jsinco.malts.enums.Driver;
 import dev.jsinco.malts.enums.EconomyProvider;
+import dev.jsinco.malts.enums.KeyEncoding;
 import dev.jsinco.malts.enums.QuickReturnClickType;
 import dev.jsinco.malts.enums.WarehouseMode;
 import eu.okaeri.configs.OkaeriConfig;
@@ -77,6 +79,13 @@ public class Config extends OkaeriFile {
                 "is fine for most servers."
         })
         private long defaultObjectCacheTime = 1200000;
+        @Comment({
+                "How long (in milliseconds) Malts should collect vault saves",
+                "before writing them to the database together in one batch.",
+                "Saving the same vault multiple times within this window only",
+                "writes it once. Set to 0 to write every save immediately."
+        })
+        private long saveBatchWindow = 50;
         @Comment({
                 "The driver to use for storing data. Malts provides no",
                 "methods for swapping storage drivers. If you would like to",
@@ -101,6 +110,116 @@ public class Config extends OkaeriFile {
         private String password = "password";
 
         private String jdbcFlags = "?useSSL=false&verifyServerCertificate=false&useUnicode=true&characterEncoding=utf-8";
+
+        @Comment({
+                "How vault contents are compressed before being stored.",
+                "Existing vaults are converted the next time they are saved,",
+                "and vaults stored with any option can always be read back.",
+                "* Options: NONE, DEFLATE"
+        })
+        private Compression compression = Compression.DEFLATE;
+
+        @Comment({
+                "Saving a vault only writes the slots that changed since it was",
+                "last saved. Once a vault has more changed slots than this stored",
+                "separately, it is rewritten in full. Set to 0 to always rewrite",
+                "the whole vault."
+        })
+        private int vaultCompactionThreshold = 12;
+
+        @Comment({
+                "How much memory (in megabytes) Malts may use to keep recently",
+                "used vaults loaded, so reopening them doesn't read the database.",
+                "Measured by the size of each vault in storage. Set to 0 to disable."
+        })
+        private int vaultCacheSize = 16;
+
+        @Comment({
+                "How long (in milliseconds) opening a vault may wait for it to",
+                "finish saving after it was closed, before the player is told",
+                "it's already open."
+        })
+        private long vaultLockTimeout = 5000;
+
+        @Comment({
+                "How many database tasks may wait for a free connection. Once full,",
+                "new tasks are refused and logged instead of slowing down the server.",
+                "Database work runs on its own threads, one per connection,",
+                "so a slow database can't hold up other plugins."
+        })
+        private int databaseQueueCapacity = 1000;
+
+        @Comment({
+                "Run database tasks on virtual threads instead of platform threads.",
+                "The number of tasks running at once stays the same."
+        })
+        private boolean virtualThreads = false;
+
+        @Comment({
+                "How player UUIDs and warehouse materials are stored.",
+                "BINARY stores UUIDs as 16 bytes and materials as small ids,",
+                "which makes tables and indexes much smaller on large servers.",
+                "Switching an existing database to BINARY migrates it on the",
+                "next start and keeps the old tables with a '_text' suffix.",
+                "A database cannot be switched back to TEXT once migrated.",
+                "* Options: TEXT, BINARY"
+        })
+        private KeyEncoding keyEncoding = KeyEncoding.TEXT;
+
+        @Comment({
+                "After a Minecraft update, re-encode every stored vault in the",
+                "background so items don't have to be upgraded when a player",
+                "first opens them. Picks up where it left off after a restart."
+        })
+        private boolean reencodeItems = true;
+
+        @Comment("How many vaults the re-encoder reads and writes at a time.")
+        private int reencodeBatchSize = 50;
+
+        @Comment("How long (in milliseconds) the re-encoder pauses between batches.")
+        private long reencodeBatchDelay = 1000;
+
+        @Comment({
+                "How many vaults '/malts locate' reads at a time while",
+                "searching every player's vaults and warehouses."
+        })
+        private int locatorPageSize = 100;
+
+        @Comment({
+                "How long (in milliseconds) '/malts locate' may search before",
+                "it stops and reports what it found so far."
+        })
+        private long locatorTimeBudget = 60000;
+
+        @Comment("Settings only used when the driver is SQLITE.")
+        private SQLite sqlite = new SQLite();
+
+        @Getter
+        @Accessors(fluent = true)
+        public static class SQLite extends OkaeriConfig {
+            @Comment({
+                    "Use write-ahead logging. Lets vaults and warehouses be read",
+                    "while a save is being written instead of waiting for it.",
+                    "Only disable this if your data folder is on a network drive."
+            })
+            private boolean walMode = true;
+
+            @Comment({
+                    "How careful SQLite is about flushing writes to disk.",
+                    "NORMAL is safe with write-ahead logging and much faster than FULL.",
+                    "* Options: OFF, NORMAL, FULL, EXTRA"
+            })
+            private String synchronous = "NORMAL";
+
+            @Comment("How long (in milliseconds) a connection waits for a locked database before giving up.")
+            private int busyTimeout = 5000;
+
+            @Comment({
+                    "How many read-only connections to keep open. All writes go",
+                    "through a single dedicated connection."
+            })
+            private int readPoolSize = 4;
+        }
     }
 
     private Vaults vaults = new Vaults();
@@ -148,6 +267,14 @@ public class Config extends OkaeriFile {
                 "Or, by using '/malts max vaults add <player> <amount>'.",
         })
         private int defaultMaxVaults = 0;
+
+        @Comment({
+                "When several players view the same vault (e.g. staff with the",
+                "bypass permission), give them all the same inventory instead",
+                "of copying changes between separate copies of the vault.",
+                "Changes show up for everyone instantly and can't be lost."
+        })
+        private boolean sharedInventory = false;
     }
 
 
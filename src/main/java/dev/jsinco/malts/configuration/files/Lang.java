@@ -102,6 +102,7 @@ public class Lang extends OkaeriFile {
         private Reload reload = new Reload();
         private QuickReturn quickReturn = new QuickReturn();
         private Search search = new Search();
+        private Locate locate = new Locate();
 
         @Getter
         @Accessors(fluent = true)
@@ -156,6 +157,23 @@ public class Lang extends OkaeriFile {
             private String playerNotFound;
             private String noAccessibleVaults;
         }
+
+        @Getter
+        @Accessors(fluent = true)
+        public static class Locate extends OkaeriConfig {
+            private String noFilter;
+            private String invalidMaterial;
+            private String invalidPattern;
+            private String alreadyRunning;
+            private String started;
+            private String progress;
+            private String vaultResult;
+            private String warehouseResult;
+            private String writtenToFile;
+            private String finished;
+            private String timedOut;
+            private String failed;
+        }
     }
 
     @Getter
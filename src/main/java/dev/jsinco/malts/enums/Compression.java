@@ -0,0 +1,99 @@
+package dev.jsinco.malts.enums;
+
+import lombok.Getter;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression applied to binary vault payloads.
+ * The id is written into every payload so a vault can always be read back,
+ * even after the configured compression changes.
+ *
+ * @see dev.jsinco.malts.storage.VaultPayload
+ */
+@Getter
+public enum Compression {
+
+    NONE(0) {
+        @Override
+        public byte[] compress(byte[] data) {
+            return data;
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int length) {
+            return data;
+        }
+    },
+    DEFLATE(1) {
+        @Override
+        public byte[] compress(byte[] data) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(data);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished()) {
+                    int written = deflater.deflate(buffer);
+                    out.write(buffer, 0, written);
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int length) {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(data);
+                byte[] result = new byte[length];
+                int read = 0;
+                while (read < length && !inflater.finished()) {
+                    int inflated = inflater.inflate(result, read, length - read);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    read += inflated;
+                }
+                if (read != length) {
+                    throw new IllegalArgumentException("Corrupt payload, expected " + length + " bytes but inflated " + read);
+                }
+                return result;
+            } catch (DataFormatException e) {
+                throw new IllegalArgumentException("Corrupt payload", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    };
+
+    private final int id;
+
+    Compression(int id) {
+        this.id = id;
+    }
+
+    public abstract byte[] compress(byte[] data);
+
+    /**
+     * @param data the compressed data
+     * @param length the length of the data before it was compressed
+     * @return the original data
+     */
+    public abstract byte[] decompress(byte[] data, int length);
+
+    public static Compression fromId(int id) {
+        for (Compression compression : values()) {
+            if (compression.id == id) {
+                return compression;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compression id: " + id);
+    }
+}
@@ -6,6 +6,8 @@ import lombok.Getter;
 import dev.jsinco.malts.storage.DataSource;
 import dev.jsinco.malts.storage.sources.SQLiteDataSource;
 
+import java.util.Locale;
+
 @Getter
 public enum Driver {
 
@@ -27,6 +29,13 @@ public enum Driver {
         return asString;
     }
 
+    /**
+     * @return the name of the folder holding this driver's SQL statements
+     */
+    public String getDialect() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
     @SuppressWarnings("unchecked")
     public <T extends DataSource> T supply(Config.Storage config) {
         return (T) supplier.supply(config);
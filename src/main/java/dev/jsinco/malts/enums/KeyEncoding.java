@@ -0,0 +1,60 @@
+package dev.jsinco.malts.enums;
+
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/**
+ * How UUID keys are stored in the database.
+ * <p>
+ * {@link #BINARY} also stores warehouse materials as integer ids from the
+ * {@code malts_materials} table instead of their names.
+ *
+ * @see dev.jsinco.malts.storage.KeySchema
+ */
+public enum KeyEncoding {
+
+    TEXT {
+        @Override
+        public void setUuid(PreparedStatement statement, int index, UUID uuid) throws SQLException {
+            statement.setString(index, uuid.toString());
+        }
+
+        @Override
+        public UUID getUuid(ResultSet rs, String column) throws SQLException {
+            return UUID.fromString(rs.getString(column));
+        }
+    },
+    BINARY {
+        @Override
+        public void setUuid(PreparedStatement statement, int index, UUID uuid) throws SQLException {
+            statement.setBytes(index, toBytes(uuid));
+        }
+
+        @Override
+        public UUID getUuid(ResultSet rs, String column) throws SQLException {
+            return fromBytes(rs.getBytes(column));
+        }
+    };
+
+    public abstract void setUuid(PreparedStatement statement, int index, UUID uuid) throws SQLException;
+
+    public abstract UUID getUuid(ResultSet rs, String column) throws SQLException;
+
+    public static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    public static UUID fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != 16) {
+            throw new IllegalArgumentException("Expected a 16 byte UUID");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
@@ -2,6 +2,7 @@ package dev.jsinco.malts.events;
 
 import dev.jsinco.malts.integration.compiled.UpdateCheckIntegration;
 import dev.jsinco.malts.obj.MaltsPlayer;
+import dev.jsinco.malts.obj.VaultViewers;
 import dev.jsinco.malts.obj.Warehouse;
 import dev.jsinco.malts.registry.Registry;
 import dev.jsinco.malts.storage.DataSource;
@@ -44,6 +45,7 @@ public class PlayerListener implements Listener {
         DataSource dataSource = DataSource.getInstance();
         dataSource.uncacheObject(player.getUniqueId(), MaltsPlayer.class);
         dataSource.uncacheObject(player.getUniqueId(), Warehouse.class);
+        VaultViewers.removeAll(player);
     }
 
 
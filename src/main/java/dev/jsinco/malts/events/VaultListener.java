@@ -9,19 +9,36 @@ import dev.jsinco.malts.gui.VaultOtherGui;
 import dev.jsinco.malts.gui.YourVaultsGui;
 import dev.jsinco.malts.obj.MaltsPlayer;
 import dev.jsinco.malts.obj.VaultKey;
+import dev.jsinco.malts.obj.VaultSync;
+import dev.jsinco.malts.obj.VaultViewers;
 import dev.jsinco.malts.storage.DataSource;
 import dev.jsinco.malts.obj.Vault;
+import dev.jsinco.malts.utility.Text;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
 import org.bukkit.inventory.InventoryHolder;
 
 public class VaultListener implements Listener {
 
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryOpen(InventoryOpenEvent event) {
+        if (event.getInventory().getHolder(false) instanceof Vault vault && event.getPlayer() instanceof Player player) {
+            VaultViewers.add(vault.getKey(), player);
+            VaultSync.track(vault);
+            if (ConfigManager.get(Config.class).vaults().sharedInventory()) {
+                // Every viewer of this vault opens this instance until the last one closes it
+                DataSource.getInstance().getVaultCache().pin(vault);
+            }
+        }
+    }
+
     // Save vault data when the inventory is closed
     @EventHandler
     public void onInventoryClose(InventoryCloseEvent event) {
@@ -29,6 +46,7 @@ public class VaultListener implements Listener {
         if (!(holder instanceof Vault vault)) {
             return;
         }
+        VaultViewers.remove(vault.getKey(), (Player) event.getPlayer());
         vault.update((Player) event.getPlayer());
         VaultKey key = vault.getKey();
 
@@ -37,7 +55,16 @@ public class VaultListener implements Listener {
         // Starting save, lock the vault to prevent opening while we save
         dataSource.lock(key);
 
-        dataSource.saveVault(vault).thenRun(() -> {
+        if (VaultViewers.get(vault).isEmpty()) {
+            dataSource.getVaultCache().unpin(vault);
+        }
+
+        // Peeking inside without changing anything doesn't need a write
+        dataSource.saveVaultIfChanged(vault).whenComplete((unused, throwable) -> {
+            if (throwable != null) {
+                // Still cached with the player's changes, the next save of this vault writes them
+                Text.error("Failed to save vault " + key, throwable);
+            }
             // Finished saving, we can release
             dataSource.releaseLock(key);
         });
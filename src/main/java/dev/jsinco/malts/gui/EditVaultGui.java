@@ -12,6 +12,7 @@ import dev.jsinco.malts.obj.MaltsPlayer;
 import dev.jsinco.malts.obj.Vault;
 import dev.jsinco.malts.storage.DataSource;
 import dev.jsinco.malts.utility.Couple;
+import dev.jsinco.malts.utility.Executors;
 import dev.jsinco.malts.utility.ItemStacks;
 import dev.jsinco.malts.utility.Text;
 import dev.jsinco.malts.utility.Util;
@@ -72,7 +73,8 @@ public class EditVaultGui extends MaltsGui {
                         player,
                         Text.title("<red><b>Enter text", "Enter in chat"),
                         "Enter a new vault name in chat, type 'cancel' to cancel.",
-                        input -> {
+                        // Chat is async, the vault is only modified and saved on the main thread
+                        input -> Executors.runSync(() -> {
                             if (!vault.setCustomName(input)) return;
                             DataSource.getInstance().saveVault(vault);
 
@@ -81,7 +83,7 @@ public class EditVaultGui extends MaltsGui {
                                 meta.lore(Text.mmlNoItalic(Util.replaceAll(cfg.editVaultGui().editNameButton().lore(), "{vaultName}", vault.getCustomName()), NamedTextColor.WHITE));
                             });
                             open(player);
-                        },
+                        }),
                         () -> open(player)
                 );
             })
@@ -147,7 +149,7 @@ public class EditVaultGui extends MaltsGui {
                         player,
                         Text.title("<red><b>Enter text", "Enter in chat"),
                         "In chat, enter the username of a player. To remove an existing player from your vault, enter their name. Type 'cancel' to cancel.",
-                        input -> {
+                        input -> Executors.runSync(() -> {
                             OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayerIfCached(input);
 
                             if (offlinePlayer == null) {
@@ -182,7 +184,7 @@ public class EditVaultGui extends MaltsGui {
                             });
                             //event.getInventory().setItem(cfg.editVaultGui().editTrustListButton().slot(), item);
                             open(player);
-                        },
+                        }),
                         () -> open(player)
                 );
             })
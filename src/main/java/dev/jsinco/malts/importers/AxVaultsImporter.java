@@ -9,6 +9,7 @@ import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.inventory.ItemStack;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -68,9 +69,9 @@ public class AxVaultsImporter implements Importer {
                                     entry -> entry.getValue().getStorage().getContents()
                             ));
 
-                    return DataSource.getInstance().getVaults(uuid)
-                            .thenCompose(existing -> {
-                                if (!existing.isEmpty()) {
+                    return DataSource.getInstance().hasVaults(uuid)
+                            .thenCompose(hasVaults -> {
+                                if (hasVaults) {
                                     return CompletableFuture.completedFuture(Couple.of(uuid, Result.VAULTS_NOT_EMPTY));
                                 }
 
@@ -86,18 +87,17 @@ public class AxVaultsImporter implements Importer {
 
     private CompletableFuture<Void> saveAllVaults(UUID uuid, Map<Integer, ItemStack[]> inventories) {
         DataSource dataSource = DataSource.getInstance();
-        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        List<CompletableFuture<Void>> saves = new ArrayList<>();
 
+        // Queue every vault up front so they're written in one batch
         for (var entry : inventories.entrySet()) {
             int index = entry.getKey();
             ItemStack[] inv = entry.getValue();
-            chain = chain.thenCompose(v ->
-                    dataSource.saveVault(new Vault(uuid, index, inv))
-                            .thenRun(() -> Text.log("Imported vault #" + index + " for " + uuid))
-            );
+            saves.add(dataSource.saveVault(new Vault(uuid, index, inv))
+                    .thenRun(() -> Text.log("Imported vault #" + index + " for " + uuid)));
         }
 
-        return chain;
+        return CompletableFuture.allOf(saves.toArray(CompletableFuture[]::new));
     }
 
 }
@@ -81,23 +81,21 @@ public class PlayerVaultsImporter implements Importer {
             return CompletableFuture.completedFuture(Couple.of(owner, Result.NO_VAULTS_IN_OTHER_PLUGIN));
         }
 
-        return dataSource.getVaults(owner).thenCompose(existing -> {
-            if (!existing.isEmpty()) {
+        return dataSource.hasVaults(owner).thenCompose(hasVaults -> {
+            if (hasVaults) {
                 return CompletableFuture.completedFuture(Couple.of(owner, Result.VAULTS_NOT_EMPTY));
             }
 
-            // Chain all saveVault() calls
-            CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+            // Queue all saveVault() calls so they're written in one batch
+            CompletableFuture<?>[] saves = new CompletableFuture<?>[inventories.size()];
             int i = 1;
             for (ItemStack[] inv : inventories) {
                 final int index = i++;
-                chain = chain.thenCompose(v -> dataSource.saveVault(new Vault(owner, index, inv)).thenApply(x -> {
-                    Text.log("Imported vault #" + index + " for " + owner);
-                    return null;
-                }));
+                saves[index - 1] = dataSource.saveVault(new Vault(owner, index, inv))
+                        .thenRun(() -> Text.log("Imported vault #" + index + " for " + owner));
             }
 
-            return chain.thenApply(v -> Couple.of(owner, expectedResult));
+            return CompletableFuture.allOf(saves).thenApply(v -> Couple.of(owner, expectedResult));
         });
     }
 
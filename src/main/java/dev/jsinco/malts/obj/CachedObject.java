@@ -16,7 +16,7 @@ import java.util.concurrent.CompletableFuture;
  *
  * <p>
  * Cached objects will be checked every 100ms to see if they are expired and
- * will be saved at Malts' set save interval of 60s.
+ * will be saved at Malts' set save interval of 60s if they are {@link #isDirty() dirty}.
  * If an object does not have a null expiration time and is past its expiration time,
  * Malts will save the object by using the {@link #save(DataSource)} method declared in the object
  * and remove it from the cache.
@@ -44,6 +44,26 @@ public interface CachedObject {
     @NotNull
     CompletableFuture<Void> save(DataSource dataSource);
 
+    /**
+     * Whether this object has changed since it was last saved. Objects which
+     * are not dirty are skipped when Malts flushes its cache.
+     * Objects that don't track their changes are always considered dirty.
+     *
+     * @return true if this object needs to be saved
+     */
+    default boolean isDirty() {
+        return true;
+    }
+
+    /**
+     * Marks this object as changed or unchanged since its last save.
+     * Malts clears the flag right before it saves the object.
+     *
+     * @param dirty the new dirty state
+     */
+    default void setDirty(boolean dirty) {
+    }
+
     default boolean isExpired() {
         Long expiration = this.getExpire();
         return expiration != null && expiration < System.currentTimeMillis();
@@ -29,6 +29,7 @@ public class MaltsPlayer implements CachedObject {
     private static final Config cfg = ConfigManager.get(Config.class);
 
     private Long expire;
+    private volatile boolean dirty;
 
     private final UUID uuid;
     private int maxVaults;
@@ -43,6 +44,7 @@ public class MaltsPlayer implements CachedObject {
         this.maxWarehouseStock = 0;
         this.warehouseMode = WarehouseMode.NONE;
         this.quickReturnClickType = cfg.quickReturn().defaultClickType();
+        this.dirty = true; // Never been saved
     }
 
     public MaltsPlayer(@NotNull UUID uuid, int maxVaults, int maxWarehouseStock, WarehouseMode warehouseMode, QuickReturnClickType quickReturnClickType) {
@@ -53,6 +55,26 @@ public class MaltsPlayer implements CachedObject {
         this.quickReturnClickType = quickReturnClickType == null ? cfg.quickReturn().defaultClickType() : quickReturnClickType;
     }
 
+    public void setMaxVaults(int maxVaults) {
+        this.maxVaults = maxVaults;
+        this.dirty = true;
+    }
+
+    public void setMaxWarehouseStock(int maxWarehouseStock) {
+        this.maxWarehouseStock = maxWarehouseStock;
+        this.dirty = true;
+    }
+
+    public void setWarehouseMode(WarehouseMode warehouseMode) {
+        this.warehouseMode = warehouseMode;
+        this.dirty = true;
+    }
+
+    public void setQuickReturnClickType(QuickReturnClickType quickReturnClickType) {
+        this.quickReturnClickType = quickReturnClickType;
+        this.dirty = true;
+    }
+
     @Nullable
     public Player getPlayer() {
         return Bukkit.getPlayer(uuid);
@@ -115,6 +137,7 @@ public class MaltsPlayer implements CachedObject {
         return "MaltsPlayer{" +
                 "uuid=" + uuid +
                 ", expire=" + expire +
+                ", dirty=" + dirty +
                 ", maxVaults=" + maxVaults +
                 ", maxWarehouseStock=" + maxWarehouseStock +
                 '}';
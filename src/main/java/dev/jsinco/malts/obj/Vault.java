@@ -12,10 +12,13 @@ import dev.jsinco.malts.configuration.ConfigManager;
 import dev.jsinco.malts.configuration.files.Config;
 import dev.jsinco.malts.configuration.files.Lang;
 import dev.jsinco.malts.storage.DataSource;
+import dev.jsinco.malts.storage.VaultLocks;
+import dev.jsinco.malts.storage.VaultPayload;
 import dev.jsinco.malts.utility.Couple;
 import dev.jsinco.malts.utility.Executors;
 import dev.jsinco.malts.utility.Text;
 import dev.jsinco.malts.utility.Util;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.bukkit.Bukkit;
@@ -31,6 +34,7 @@ import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
@@ -61,6 +65,19 @@ public class Vault implements MaltsInventory {
     private Material icon;
     private List<UUID> trustedPlayers;
 
+    // Fingerprint of each slot storage currently holds, null if it has never been written as a binary payload.
+    // Kept instead of copies of the items so a cached vault doesn't hold its contents twice
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private volatile long[] savedSlots;
+    // Name, icon and trusted players as they were last written, compared alongside savedSlots
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private volatile String savedMetadata;
+    // Slots which have a delta row on top of the stored base inventory
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private final Set<Integer> deltaSlots = new HashSet<>();
+    // Approximate size of this vault in storage, 0 if it has never been stored
+    private int storedBytes;
+
     public Vault(UUID owner, int id) {
         Preconditions.checkArgument(id > 0, "Vault ID must be greater than 0");
         this.key = VaultKey.of(owner, id);
@@ -90,6 +107,14 @@ public class Vault implements MaltsInventory {
     }
 
     public Vault(UUID owner, int id, String encodedInventory, String customName, Material icon, String trustedPlayers) {
+        this(owner, id, encodedInventory != null && !encodedInventory.isEmpty() ? decodeInventory(encodedInventory) : null, customName, icon, trustedPlayers);
+    }
+
+    public Vault(UUID owner, int id, byte[] inventoryData, String customName, Material icon, String trustedPlayers) {
+        this(owner, id, inventoryData != null ? decodeInventory(inventoryData) : null, customName, icon, trustedPlayers);
+    }
+
+    private Vault(UUID owner, int id, @Nullable ItemStack[] items, String customName, Material icon, String trustedPlayers) {
         this.key = VaultKey.of(owner, id);
         this.customName = customName != null && !customName.isEmpty() ? customName : "Vault #" + id;
         this.icon = icon != null && icon.isItem() ? icon : cfg.vaults().defaultIcon();
@@ -97,11 +122,6 @@ public class Vault implements MaltsInventory {
         List<UUID> json = GSON.fromJson(trustedPlayers, LIST_UUID_TYPE_TOKEN);
         this.trustedPlayers = json != null ? json : new ArrayList<>();
 
-        ItemStack[] items = null;
-        if (encodedInventory != null && !encodedInventory.isEmpty()) {
-            items = decodeInventory(encodedInventory);
-        }
-
         int count = items != null ? items.length : 9;
         int size = Math.max(((count + 8) / 9) * 9, cfg.vaults().size());
         this.inventory = Bukkit.createInventory(this, size, Text.mm(customName));
@@ -110,11 +130,151 @@ public class Vault implements MaltsInventory {
         }
     }
 
+    /**
+     * Encodes this vault's contents in the legacy Base64 text format.
+     *
+     * @deprecated vaults are stored as binary payloads, use {@link #encodeInventoryData()}
+     */
+    @Deprecated
     public String encodeInventory() {
         byte[] itemByteArray = ItemStack.serializeItemsAsBytes(inventory.getContents());
         return Base64.getEncoder().encodeToString(itemByteArray);
     }
 
+    /**
+     * Encodes this vault's contents as a binary payload using the configured compression.
+     *
+     * @see VaultPayload
+     */
+    public byte[] encodeInventoryData() {
+        return encodeInventoryData(inventory.getContents());
+    }
+
+    public static byte[] encodeInventoryData(ItemStack[] contents) {
+        byte[] itemByteArray = ItemStack.serializeItemsAsBytes(contents);
+        return VaultPayload.encode(itemByteArray, cfg.storage().compression());
+    }
+
+    /**
+     * Copies this vault's contents and metadata so they can be written on another thread.
+     * Must be called on the thread which owns the vault, the main thread for any vault
+     * a player may have open.
+     *
+     * @return the snapshot to save
+     */
+    public VaultSnapshot snapshot() {
+        return new VaultSnapshot(this, copyContents(inventory.getContents()), customName, icon, this.encodeTrusted());
+    }
+
+    /**
+     * Compares a snapshot of this vault's contents to what was last written to storage.
+     *
+     * @param snapshot the snapshot to write
+     * @param compactionThreshold how many slot deltas a vault may have before it's rewritten in full, 0 or less to always rewrite
+     * @return the changes to write
+     */
+    public VaultChanges changesSinceSave(VaultSnapshot snapshot, int compactionThreshold) {
+        ItemStack[] contents = snapshot.contents();
+        long[] savedSlots = this.savedSlots;
+        if (savedSlots == null || savedSlots.length != contents.length || compactionThreshold <= 0) {
+            return new VaultChanges(contents, List.of(), true);
+        }
+
+        List<Integer> changedSlots = new ArrayList<>();
+        for (int slot = 0; slot < contents.length; slot++) {
+            if (savedSlots[slot] != slotFingerprint(contents[slot])) {
+                changedSlots.add(slot);
+            }
+        }
+
+        Set<Integer> slotsAfterSave = new HashSet<>(deltaSlots);
+        slotsAfterSave.addAll(changedSlots);
+        if (slotsAfterSave.size() > compactionThreshold) {
+            return new VaultChanges(contents, List.of(), true);
+        }
+        return new VaultChanges(contents, changedSlots, false);
+    }
+
+    /**
+     * Records that changes from {@link #changesSinceSave(VaultSnapshot, int)} were written to storage.
+     *
+     * @param snapshot the snapshot the changes were taken from
+     * @param changes the changes which were written
+     */
+    public void markSaved(VaultSnapshot snapshot, VaultChanges changes) {
+        this.savedSlots = slotFingerprints(changes.contents());
+        this.savedMetadata = metadataFingerprint(snapshot.customName(), snapshot.icon(), snapshot.trustedPlayers());
+        if (changes.compact()) {
+            deltaSlots.clear();
+        } else {
+            deltaSlots.addAll(changes.changedSlots());
+        }
+    }
+
+    /**
+     * Called after this vault's base inventory has been read from a binary payload.
+     * Applies the stored slot deltas on top and records the result as what storage holds.
+     *
+     * @param deltas slot deltas keyed by slot, values may be null for emptied slots
+     */
+    public void loadSlotDeltas(Map<Integer, ItemStack> deltas) {
+        for (Map.Entry<Integer, ItemStack> delta : deltas.entrySet()) {
+            int slot = delta.getKey();
+            if (slot >= 0 && slot < inventory.getSize()) {
+                inventory.setItem(slot, delta.getValue());
+            }
+            deltaSlots.add(slot);
+        }
+        this.savedSlots = slotFingerprints(inventory.getContents());
+        this.savedMetadata = metadataFingerprint(customName, icon, this.encodeTrusted());
+    }
+
+    /**
+     * Checks if saving this vault would write nothing new, e.g. after someone only looked inside it.
+     *
+     * @return true if this vault's contents and metadata are the same as what storage holds
+     */
+    public boolean isUnchangedSinceSave() {
+        long[] saved = this.savedSlots;
+        if (saved == null || !metadataFingerprint(customName, icon, this.encodeTrusted()).equals(savedMetadata)) {
+            return false;
+        }
+
+        ItemStack[] contents = inventory.getContents();
+        if (contents.length != saved.length) {
+            return false;
+        }
+        for (int slot = 0; slot < contents.length; slot++) {
+            if (saved[slot] != slotFingerprint(contents[slot])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if this vault was loaded from or written to storage as a binary payload
+     */
+    public boolean hasSavedContents() {
+        return savedSlots != null;
+    }
+
+    @Nullable
+    public static byte[] encodeSlot(@Nullable ItemStack item) {
+        if (item == null || item.isEmpty()) {
+            return null;
+        }
+        return VaultPayload.encode(item.serializeAsBytes(), cfg.storage().compression());
+    }
+
+    @Nullable
+    public static ItemStack decodeSlot(@Nullable byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        return ItemStack.deserializeBytes(VaultPayload.decode(data));
+    }
+
     public String encodeTrusted() {
         return GSON.toJson(trustedPlayers, LIST_UUID_TYPE_TOKEN);
     }
@@ -127,6 +287,33 @@ public class Vault implements MaltsInventory {
      */
     public void open(Player player) {
         Executors.runSync(() -> {
+            VaultLocks locks = DataSource.getInstance().getVaultLocks();
+            if (locks.isLocked(this.key)) {
+                // Still being saved, open it once the save is done
+                Text.debug("Vault " + this.key.id() + " is being saved, player " + player.getName() + " will open it once it's done.");
+                locks.awaitUnlock(this.key).thenAccept(unlocked -> {
+                    if (unlocked) {
+                        this.open(player);
+                    } else {
+                        Executors.runSync(() -> ConfigManager.get(Lang.class).entry(l -> l.vaults().alreadyOpen(), player));
+                    }
+                });
+                return;
+            }
+
+            if (!player.isOnline()) {
+                return;
+            }
+
+            if (cfg.vaults().sharedInventory()) {
+                // Someone already has another instance of this vault open, join them in it
+                Vault pinned = DataSource.getInstance().getVaultCache().getPinned(this.key);
+                if (pinned != null && pinned != this) {
+                    pinned.open(player);
+                    return;
+                }
+            }
+
             List<Player> viewers = this.getViewers();
             boolean canOpen = this.canOpen(player, viewers);
             VaultOpenEvent event = new VaultOpenEvent(this, player, viewers, !Bukkit.isPrimaryThread());
@@ -159,13 +346,7 @@ public class Vault implements MaltsInventory {
         // - No other players are viewing it
         // - The player has the bypass permission
         // - The only other viewers are players with the bypass permission
-        // A vault may never be opened if it is locked.
-        DataSource dataSource = DataSource.getInstance();
-        if (dataSource.isLocked(this.key)) {
-            Text.debug("Vault " + this.key.id() + " is locked, player " + player.getName() + " cannot open it.");
-            return false;
-        }
-
+        // Locked vaults are waited on in open()
         if (viewers.isEmpty()) {
             Text.debug("Vault " + this.key.id() + " has no viewers, player " + player.getName() + " can open it.");
             return true;
@@ -187,36 +368,17 @@ public class Vault implements MaltsInventory {
     }
 
     public List<Player> getViewers() {
-        List<Player> viewers = new ArrayList<>();
-        for (Player player : Bukkit.getOnlinePlayers()) {
-            if (this.equals(player.getOpenInventory().getTopInventory().getHolder(false))) {
-                viewers.add(player);
-            }
-        }
-        return viewers;
+        return VaultViewers.get(this);
     }
 
     /**
-     * Malts holds no references to open vaults.
-     * This method updates all open inventories of this vault for all players except the updater.
-     * This method runs synchronously, avoid superfluous calls.
-     * 
+     * Updates all open inventories of this vault for its other viewers on the next tick.
+     * Any number of updates within a tick are coalesced, see {@link VaultSync}.
+     *
      * @param updater the player who initiated the update, may be null
      */
     public void update(@Nullable Player updater) {
-        Executors.delayedSync(1, () -> {
-            for (Player player : Bukkit.getOnlinePlayers()) {
-                if (updater != null && player.getUniqueId() == updater.getUniqueId()) {
-                    continue;
-                }
-                
-                Inventory inv = player.getOpenInventory().getTopInventory();
-                if (this.equals(inv.getHolder(false))) {
-                    inv.setContents(this.inventory.getContents());
-                    Text.debug("Updated inventory for player " + player.getName() + " with vault " + this.key.id());
-                }
-            }
-        });
+        VaultSync.markDirty(this);
     }
 
 
@@ -319,6 +481,43 @@ public class Vault implements MaltsInventory {
         return ItemStack.deserializeItemsFromBytes(itemByteArray);
     }
 
+    private static String metadataFingerprint(String customName, Material icon, String trustedPlayers) {
+        return customName + '\n' + icon + '\n' + trustedPlayers;
+    }
+
+    static long[] slotFingerprints(ItemStack[] contents) {
+        long[] fingerprints = new long[contents.length];
+        for (int slot = 0; slot < contents.length; slot++) {
+            fingerprints[slot] = slotFingerprint(contents[slot]);
+        }
+        return fingerprints;
+    }
+
+    /**
+     * The item's hash in the upper half, its type and amount in the lower half. A different
+     * type or amount, by far the most common change, can never look the same. Empty slots are 0.
+     */
+    static long slotFingerprint(@Nullable ItemStack item) {
+        if (item == null || item.isEmpty()) {
+            return 0;
+        }
+        long typeAndAmount = ((long) item.getType().ordinal() << 8) | item.getAmount();
+        return ((long) item.hashCode() << 32) | (typeAndAmount & 0xFFFFFFFFL);
+    }
+
+    private static ItemStack[] copyContents(ItemStack[] contents) {
+        ItemStack[] copy = new ItemStack[contents.length];
+        for (int i = 0; i < contents.length; i++) {
+            ItemStack item = contents[i];
+            copy[i] = item == null || item.isEmpty() ? null : item.clone();
+        }
+        return copy;
+    }
+
+    private static ItemStack[] decodeInventory(byte[] inventoryData) {
+        return ItemStack.deserializeItemsFromBytes(VaultPayload.decode(inventoryData));
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
@@ -0,0 +1,20 @@
+package dev.jsinco.malts.obj;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.List;
+
+/**
+ * The difference between a {@link Vault}'s contents and what was last written to storage.
+ *
+ * @param contents the snapshot of the vault's contents the changes were taken from
+ * @param changedSlots the slots which differ from storage, empty when {@code compact} is true
+ * @param compact true if the whole inventory should be rewritten and all slot deltas dropped
+ * @see Vault#changesSinceSave(VaultSnapshot, int)
+ */
+public record VaultChanges(ItemStack[] contents, List<Integer> changedSlots, boolean compact) {
+
+    public boolean isEmpty() {
+        return !compact && changedSlots.isEmpty();
+    }
+}
@@ -10,95 +10,208 @@ import dev.jsinco.malts.utility.Text;
 import dev.jsinco.malts.utility.Util;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.event.ClickEvent;
 import net.kyori.adventure.text.event.HoverEvent;
 import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import org.bukkit.Material;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
- * Scans a collection of vaults for a given item(s) based
+ * Scans snapshots of a collection of vaults for a given item(s) based
  * on certain criteria.
  *
  * @see SearchCommand
  * @see Vault
  */
-public record VaultContentScanner(Collection<Vault> vaults, @Nullable IntPair range, @Nullable String who) {
+public record VaultContentScanner(Collection<VaultSnapshot> vaults, @Nullable IntPair range, @Nullable String who) {
 
     private static final IntPair RANGE_PER_PAGE = IntPair.of(1, 6);
-
-    public VaultContentScanner(Collection<Vault> vaults, int page, @Nullable String who) {
+    // Below this many vaults the scan isn't worth splitting across threads
+    private static final int PARALLEL_THRESHOLD = 8;
+    private static final int PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors());
+    // Vaults scanned before checking if enough items were found
+    private static final int CHUNK_SIZE = Math.max(PARALLEL_THRESHOLD, PARALLELISM * 4);
+    private static final Map<Material, String> MATERIAL_NAMES = new ConcurrentHashMap<>();
+
+    public VaultContentScanner(Collection<VaultSnapshot> vaults, int page, @Nullable String who) {
         this(vaults, rangeForPage(page), who);
     }
 
+    /**
+     * Gets how many matching items are enough to show a page and know whether there's a next one.
+     *
+     * @param page the page to show
+     * @return the limit to pass to {@link #matchingVaults(String, int, Executor)}
+     */
+    public static int limitForPage(int page) {
+        return rangeForPage(page).b() + 1;
+    }
 
+    /**
+     * Scans every vault on the calling thread.
+     *
+     * @param plainText the text to search for
+     * @return the vaults with matching items, in the order of {@link #vaults()}
+     */
     public ResultCollection matchingVaults(String plainText) {
-        String searchFor = plainText.toLowerCase().strip();
-        List<Result> results = vaults.stream()
-                .map(vault -> {
-                    List<ItemStack> matches = Arrays.stream(vault.getInventory().getContents())
-                            .filter(Objects::nonNull)
-                            .filter(item -> matchesSearch(item, searchFor))
-                            .collect(Collectors.toList());
+        return this.matchingVaults(plainText, Integer.MAX_VALUE, Runnable::run);
+    }
+
+    /**
+     * Scans the vaults in order for items matching the search, stopping once enough items
+     * were found. Vaults are scanned a chunk at a time, split across the executor's threads,
+     * so the results are always the first matches even when the scan stops early.
+     * <p>
+     * Only snapshots are read, so this never touches a live inventory and can run on any thread.
+     *
+     * @param plainText the text to search for
+     * @param limit how many matching items are enough, the last vault scanned may add more
+     * @param executor the executor to scan on, should never be the database executor
+     * @return the vaults with matching items, in the order of {@link #vaults()}
+     */
+    public ResultCollection matchingVaults(String plainText, int limit, Executor executor) {
+        Query query = new Query(plainText);
+        List<VaultSnapshot> toScan = List.copyOf(vaults);
+        List<Result> results = new ArrayList<>();
+        int found = 0;
+        int scanned = 0;
+
+        while (scanned < toScan.size() && found < limit) {
+            List<VaultSnapshot> chunk = toScan.subList(scanned, Math.min(scanned + CHUNK_SIZE, toScan.size()));
+            for (Result result : this.scanChunk(chunk, query, executor)) {
+                results.add(result);
+                found += result.getMatchingItems().size();
+            }
+            scanned += chunk.size();
+        }
+        return new ResultCollection(results, range, plainText, who, -1, scanned == toScan.size());
+    }
+
+    private List<Result> scanChunk(List<VaultSnapshot> chunk, Query query, Executor executor) {
+        if (chunk.size() < PARALLEL_THRESHOLD) {
+            return this.scanAll(chunk, query);
+        }
 
-                    if (matches.isEmpty()) return null;
+        int sliceSize = (chunk.size() + PARALLELISM - 1) / PARALLELISM;
+        List<CompletableFuture<List<Result>>> slices = new ArrayList<>();
+        for (int start = 0; start < chunk.size(); start += sliceSize) {
+            List<VaultSnapshot> slice = chunk.subList(start, Math.min(start + sliceSize, chunk.size()));
+            slices.add(CompletableFuture.supplyAsync(() -> this.scanAll(slice, query), executor));
+        }
 
-                    return new Result(vault, matches, who);
-                })
-                .filter(Objects::nonNull)
-                .toList();
-        return new ResultCollection(results, range, plainText, who);
+        List<Result> results = new ArrayList<>();
+        for (CompletableFuture<List<Result>> slice : slices) {
+            results.addAll(slice.join());
+        }
+        return results;
     }
 
+    private List<Result> scanAll(List<VaultSnapshot> snapshots, Query query) {
+        List<Result> results = new ArrayList<>();
+        for (VaultSnapshot snapshot : snapshots) {
+            Result result = this.scan(snapshot, query);
+            if (result != null) {
+                results.add(result);
+            }
+        }
+        return results;
+    }
 
-    private boolean matchesSearch(ItemStack itemStack, String searchFor) {
-        return hasMatchingName(itemStack, searchFor)
-                || hasMatchingMaterialName(itemStack, searchFor)
-                || hasMatchingLore(itemStack, searchFor);
+    @Nullable
+    private Result scan(VaultSnapshot snapshot, Query query) {
+        List<ItemStack> matches = null;
+        for (ItemStack item : snapshot.contents()) {
+            if (item == null || !query.matches(item)) {
+                continue;
+            }
+            if (matches == null) {
+                matches = new ArrayList<>(4);
+            }
+            matches.add(item);
+        }
+        return matches != null ? new Result(snapshot.vault(), matches, who) : null;
     }
 
+    /**
+     * Gets the text stored in the vault content index for an item, which a search
+     * matches if the query is contained in it. Each field is on its own line so a
+     * query can't match across two of them.
+     *
+     * @param itemStack the item to index
+     * @return the item's material, name and lore in lower case
+     */
+    public static String searchableText(ItemStack itemStack) {
+        StringBuilder text = new StringBuilder(materialName(itemStack.getType()))
+                .append('\n')
+                .append(plainLowerCase(itemStack.effectiveName()));
+
+        List<Component> lore = lore(itemStack);
+        if (lore != null) {
+            for (Component loreLine : lore) {
+                text.append('\n').append(plainLowerCase(loreLine));
+            }
+        }
+        return text.toString();
+    }
 
-    private boolean hasMatchingName(ItemStack itemStack, String plainText) {
-        final String searchFor = plainText.toLowerCase().strip();
-        String plainItemName = PlainTextComponentSerializer.plainText()
-                .serialize(itemStack.effectiveName())
-                .toLowerCase()
-                .strip();
-        return plainItemName.contains(searchFor);
+    private static String materialName(Material material) {
+        return MATERIAL_NAMES.computeIfAbsent(material, m -> m.name().toLowerCase());
     }
 
-    private boolean hasMatchingMaterialName(ItemStack itemStack, String plainText) {
-        final String searchFor = plainText.toLowerCase().strip().replace(" ", "_");
-        String materialName = itemStack.getType().name().toLowerCase();
-        return materialName.contains(searchFor);
+    private static String plainLowerCase(Component component) {
+        return PlainTextComponentSerializer.plainText().serialize(component).toLowerCase().strip();
     }
 
-    private boolean hasMatchingLore(ItemStack itemStack, String plainText) {
-        final String searchFor = plainText.toLowerCase().strip();
-        if (!itemStack.hasItemMeta() || !itemStack.getItemMeta().hasLore()) {
-            return false;
+    // getItemMeta() copies the meta, so it's only read once per item
+    @Nullable
+    private static List<Component> lore(ItemStack itemStack) {
+        if (!itemStack.hasItemMeta()) {
+            return null;
         }
-        List<Component> lore = Preconditions.checkNotNull(itemStack.getItemMeta().lore());
+        ItemMeta meta = itemStack.getItemMeta();
+        return meta.hasLore() ? meta.lore() : null;
+    }
 
-        for (Component loreLine : lore) {
-            String plainLoreLine = PlainTextComponentSerializer.plainText()
-                    .serialize(loreLine)
-                    .toLowerCase()
-                    .strip();
-            if (plainLoreLine.contains(searchFor)) {
+    /**
+     * A search normalized once, instead of for every item it's matched against.
+     */
+    private static final class Query {
+        private final String searchFor;
+        // Material names use underscores where the query may have spaces
+        private final String materialSearchFor;
+
+        Query(String plainText) {
+            this.searchFor = plainText.toLowerCase().strip();
+            this.materialSearchFor = searchFor.replace(" ", "_");
+        }
+
+        boolean matches(ItemStack itemStack) {
+            if (materialName(itemStack.getType()).contains(materialSearchFor)
+                    || plainLowerCase(itemStack.effectiveName()).contains(searchFor)) {
                 return true;
             }
+
+            List<Component> lore = lore(itemStack);
+            if (lore != null) {
+                for (Component loreLine : lore) {
+                    if (plainLowerCase(loreLine).contains(searchFor)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
         }
-        return false;
     }
 
     public static IntPair rangeForPage(int page) {
@@ -115,7 +228,6 @@ public record VaultContentScanner(Collection<Vault> vaults, @Nullable IntPair ra
     }
 
 
-    @RequiredArgsConstructor
     public static class ResultCollection {
         private static final Lang lang = ConfigManager.get(Lang.class);
 
@@ -126,11 +238,39 @@ public record VaultContentScanner(Collection<Vault> vaults, @Nullable IntPair ra
         @Getter
         private final String query;
         private final @Nullable String who;
+        // Set when the results are already only the requested page, e.g. found through the content index
+        private final int knownTotal;
+        // False when the scan stopped early, so there may be more matches than were found
+        private final boolean complete;
 
         private final Component previousPageComponent = lang.entry(l -> l.command().search().previousPage(), "»");
         private final Component nextPageComponent = lang.entry(l -> l.command().search().nextPage(), "»");
 
 
+        public ResultCollection(List<Result> results, IntPair range, String query, @Nullable String who) {
+            this(results, range, query, who, -1, true);
+        }
+
+        /**
+         * @param results the results on the page of the given range only
+         * @param range the range of the page
+         * @param query the text searched for
+         * @param who the player whose vaults were searched, null if the sender's own
+         * @param totalItemsFound how many items matched across every page
+         */
+        public ResultCollection(List<Result> results, IntPair range, String query, @Nullable String who, int totalItemsFound) {
+            this(results, range, query, who, totalItemsFound, true);
+        }
+
+        private ResultCollection(List<Result> results, IntPair range, String query, @Nullable String who, int totalItemsFound, boolean complete) {
+            this.results = results;
+            this.range = range;
+            this.query = query;
+            this.who = who;
+            this.knownTotal = totalItemsFound;
+            this.complete = complete;
+        }
+
         public Component queryResultSummary() {
             if (query == null || query.isEmpty() || results.isEmpty()) {
                 return Preconditions.checkNotNull(lang.entry(l -> l.command().search().noResults(), true, Couple.of("{query}", query)));
@@ -148,11 +288,13 @@ public record VaultContentScanner(Collection<Vault> vaults, @Nullable IntPair ra
             Component nextPage = nextPageComponent
                     .clickEvent(ClickEvent.runCommand(this.searchCommand(page + 1)))
                     .hoverEvent(HoverEvent.showText(nextPageComponent));
+            // A scan which stopped early only knows there's at least one more page
+            String more = complete ? "" : "+";
             Component base = lang.entry(l -> lang.command().search().results(), true,
-                    Couple.of("{amount}", this.totalItemsFound()),
+                    Couple.of("{amount}", this.totalItemsFound() + more),
                     Couple.of("{query}", query),
                     Couple.of("{page}", page),
-                    Couple.of("{maxPages}", maxPages)
+                    Couple.of("{maxPages}", maxPages + more)
             );
 
             return Util.replaceComponents(base,
@@ -171,7 +313,7 @@ public record VaultContentScanner(Collection<Vault> vaults, @Nullable IntPair ra
             }
 
             // limit output based on range
-            if (range != null) {
+            if (range != null && knownTotal < 0) {
                 int total = resultsFormatted.size();
                 if (total == 0) return resultsFormatted;
 
@@ -189,6 +331,9 @@ public record VaultContentScanner(Collection<Vault> vaults, @Nullable IntPair ra
         }
 
         public int totalItemsFound() {
+            if (knownTotal >= 0) {
+                return knownTotal;
+            }
             return results.stream()
                     .mapToInt(result -> result.getMatchingItems().size())
                     .sum();
@@ -0,0 +1,11 @@
+package dev.jsinco.malts.obj;
+
+/**
+ * A slot in one of a player's vaults, as returned by a search of the vault content index.
+ *
+ * @param id the vault's id
+ * @param slot the slot in the vault's inventory
+ * @see dev.jsinco.malts.storage.DataSource#searchVaults(java.util.UUID, String)
+ */
+public record VaultSlot(int id, int slot) {
+}
@@ -0,0 +1,18 @@
+package dev.jsinco.malts.obj;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * An immutable copy of a {@link Vault} taken on the thread which owns it, so the vault
+ * can be serialized and written on another thread while players keep changing it.
+ *
+ * @param vault the vault the snapshot was taken of
+ * @param contents copies of the vault's items, empty slots are null
+ * @param customName the vault's name at the time
+ * @param icon the vault's icon at the time
+ * @param trustedPlayers the vault's trusted players, encoded as they're stored
+ * @see Vault#snapshot()
+ */
+public record VaultSnapshot(Vault vault, ItemStack[] contents, String customName, Material icon, String trustedPlayers) {
+}
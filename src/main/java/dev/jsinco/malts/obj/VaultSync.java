@@ -0,0 +1,152 @@
+package dev.jsinco.malts.obj;
+
+import dev.jsinco.malts.utility.Executors;
+import dev.jsinco.malts.utility.Text;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Keeps every open instance of a vault showing the same contents.
+ * <p>
+ * Vaults changed during a tick are collected and reconciled once on the next tick,
+ * no matter how many clicks changed them, and only slots which differ are copied.
+ * When more than one instance of a vault changed in the same tick, each keeps the
+ * slots it changed and the later change wins a slot both changed.
+ *
+ * @see Vault#update(Player)
+ */
+public final class VaultSync {
+
+    // Changed instances of each vault, in the order they were last changed
+    private static final Map<VaultKey, List<Vault>> DIRTY = new LinkedHashMap<>();
+    // Slot fingerprints of each open instance as of its last sync, by identity since instances of a vault are equal.
+    // Only used on the main thread
+    private static final Map<Vault, long[]> SYNCED = new IdentityHashMap<>();
+    private static boolean scheduled;
+
+    private VaultSync() {
+    }
+
+    /**
+     * Remembers what an instance looks like when it's opened, so the slots changed
+     * in it can be told apart from the slots another instance changed.
+     *
+     * @param vault the instance which was opened
+     */
+    public static void track(@NotNull Vault vault) {
+        SYNCED.computeIfAbsent(vault, v -> Vault.slotFingerprints(v.getInventory().getContents()));
+    }
+
+    /**
+     * Marks a vault as changed, its other instances are updated on the next tick.
+     *
+     * @param vault the vault which changed
+     */
+    public static void markDirty(@NotNull Vault vault) {
+        synchronized (DIRTY) {
+            List<Vault> changed = DIRTY.computeIfAbsent(vault.getKey(), key -> new ArrayList<>(2));
+            changed.removeIf(other -> other == vault);
+            changed.add(vault);
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        Executors.delayedSync(1, VaultSync::reconcile);
+    }
+
+    private static void reconcile() {
+        List<List<Vault>> vaults;
+        synchronized (DIRTY) {
+            vaults = new ArrayList<>(DIRTY.values());
+            DIRTY.clear();
+            scheduled = false;
+        }
+
+        for (List<Vault> changed : vaults) {
+            reconcile(changed);
+        }
+    }
+
+    private static void reconcile(List<Vault> changed) {
+        Vault latest = changed.getLast();
+        Set<Vault> open = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Player player : VaultViewers.get(latest)) {
+            if (player.getOpenInventory().getTopInventory().getHolder(false) instanceof Vault instance) {
+                open.add(instance);
+            }
+        }
+        // Instances closed since they changed still get the others' changes, they may be cached and opened again
+        Set<Vault> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+        instances.addAll(changed);
+        instances.addAll(open);
+
+        if (instances.size() > 1) {
+            ItemStack[] merged = merge(changed);
+            for (Vault instance : instances) {
+                int copied = copyChangedSlots(merged, instance.getInventory());
+                if (copied > 0) {
+                    Text.debug("Synced " + copied + " slot(s) of vault " + latest.getKey().id());
+                }
+            }
+        }
+
+        for (Vault instance : instances) {
+            if (open.contains(instance)) {
+                SYNCED.put(instance, Vault.slotFingerprints(instance.getInventory().getContents()));
+            } else {
+                SYNCED.remove(instance);
+            }
+        }
+    }
+
+    /**
+     * The latest changed instance's contents, with the slots each earlier changed instance
+     * changed since its last sync laid over them, unless the latest instance changed them too.
+     */
+    private static ItemStack[] merge(List<Vault> changed) {
+        Vault latest = changed.getLast();
+        ItemStack[] merged = latest.getInventory().getContents();
+        long[] latestSynced = SYNCED.get(latest);
+        for (int i = 0; i < changed.size() - 1; i++) {
+            Vault vault = changed.get(i);
+            ItemStack[] contents = vault.getInventory().getContents();
+            long[] synced = SYNCED.get(vault);
+            for (int slot = 0; slot < Math.min(contents.length, merged.length); slot++) {
+                if (isChanged(synced, contents, slot) && !isChanged(latestSynced, merged, slot)) {
+                    merged[slot] = contents[slot];
+                }
+            }
+        }
+        return merged;
+    }
+
+    // Without a fingerprint every slot counts as changed, so the instance is copied as a whole
+    private static boolean isChanged(long[] synced, ItemStack[] contents, int slot) {
+        return synced == null || slot >= synced.length || synced[slot] != Vault.slotFingerprint(contents[slot]);
+    }
+
+    private static int copyChangedSlots(ItemStack[] from, Inventory target) {
+        int size = Math.min(from.length, target.getSize());
+        int copied = 0;
+        for (int slot = 0; slot < size; slot++) {
+            ItemStack item = from[slot];
+            if (!Objects.equals(item, target.getItem(slot))) {
+                target.setItem(slot, item); // Copied by the inventory
+                copied++;
+            }
+        }
+        return copied;
+    }
+}
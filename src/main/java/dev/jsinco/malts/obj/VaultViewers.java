@@ -0,0 +1,74 @@
+package dev.jsinco.malts.obj;
+
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks which players have which vault open, so a vault's viewers can be found
+ * without checking the open inventory of every online player.
+ * <p>
+ * Kept up to date by {@link dev.jsinco.malts.events.VaultListener} from inventory open and
+ * close events. Lookups still confirm each registered player has the vault open, so a missed
+ * close event can't make a player count as a viewer.
+ */
+public final class VaultViewers {
+
+    private static final Map<VaultKey, Set<Player>> VIEWERS = new ConcurrentHashMap<>();
+
+    private VaultViewers() {
+    }
+
+    public static void add(@NotNull VaultKey key, @NotNull Player player) {
+        VIEWERS.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(player);
+    }
+
+    public static void remove(@NotNull VaultKey key, @NotNull Player player) {
+        VIEWERS.computeIfPresent(key, (k, viewers) -> {
+            viewers.remove(player);
+            return viewers.isEmpty() ? null : viewers;
+        });
+    }
+
+    /**
+     * Removes a player from every vault they're registered as viewing.
+     *
+     * @param player the player, e.g. one who left the server
+     */
+    public static void removeAll(@NotNull Player player) {
+        for (VaultKey key : VIEWERS.keySet()) {
+            remove(key, player);
+        }
+    }
+
+    /**
+     * @param vault the vault
+     * @return every online player who currently has the vault open
+     */
+    @NotNull
+    public static List<Player> get(@NotNull Vault vault) {
+        Set<Player> viewers = VIEWERS.get(vault.getKey());
+        if (viewers == null) {
+            return new ArrayList<>();
+        }
+
+        List<Player> confirmed = new ArrayList<>(viewers.size());
+        for (Player player : viewers) {
+            if (player.isOnline() && vault.equals(player.getOpenInventory().getTopInventory().getHolder(false))) {
+                confirmed.add(player);
+            } else {
+                remove(vault.getKey(), player);
+            }
+        }
+        return confirmed;
+    }
+
+    public static int size() {
+        return VIEWERS.size();
+    }
+}
@@ -31,9 +31,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -45,11 +47,20 @@ public class Warehouse implements CachedObject {
 
     @Getter @Setter
     private Long expire;
+    @Getter @Setter
+    private volatile boolean dirty;
 
     @Getter
     private final UUID owner;
     private final EnumMap<Material, Stock> warehouseMap; // Mapped to Material for faster lookup
+    // Compartments which need to be written or deleted on the next save
+    private final EnumSet<Material> changedMaterials = EnumSet.noneOf(Material.class);
+    private final EnumSet<Material> removedMaterials = EnumSet.noneOf(Material.class);
 
+    /**
+     * @param owner the owner of the warehouse
+     * @param warehouseMap the stock as it is currently stored, none of it is considered changed
+     */
     public Warehouse(UUID owner, EnumMap<Material, Stock> warehouseMap) {
         this.owner = owner;
         this.warehouseMap = warehouseMap;
@@ -100,6 +111,7 @@ public class Warehouse implements CachedObject {
             material = compartmentEvent.getMaterial();
             warehouseMap.put(material, new Stock(material, amt));
         }
+        this.markChanged(material);
 
         return amt;
     }
@@ -123,6 +135,7 @@ public class Warehouse implements CachedObject {
         }
 
         stock.decrease(amt);
+        this.markChanged(material);
         return ItemStack.of(material, amt);
     }
 
@@ -166,6 +179,7 @@ public class Warehouse implements CachedObject {
 
         if (event.callEvent()) {
             warehouseMap.remove(material);
+            this.markRemoved(material);
             return TriState.TRUE;
         }
         return TriState.FALSE;
@@ -183,6 +197,58 @@ public class Warehouse implements CachedObject {
     }
 
 
+    /**
+     * Takes every change made since the last call, so the caller can write exactly those rows.
+     *
+     * @return copies of the changed stock and the removed compartments
+     */
+    public synchronized WarehouseChanges drainChanges() {
+        Map<Material, Stock> changed = new EnumMap<>(Material.class);
+        for (Material material : changedMaterials) {
+            Stock stock = warehouseMap.get(material);
+            if (stock != null) {
+                changed.put(material, new Stock(material, stock.getAmount(), stock.getLastUpdate()));
+            }
+        }
+        Set<Material> removed = removedMaterials.isEmpty() ? Set.of() : EnumSet.copyOf(removedMaterials);
+
+        changedMaterials.clear();
+        removedMaterials.clear();
+        return new WarehouseChanges(changed, removed);
+    }
+
+    /**
+     * Puts back changes taken by {@link #drainChanges()} which could not be written,
+     * unless the same compartment was changed again in the meantime.
+     *
+     * @param changes the changes which failed to save
+     */
+    public synchronized void restoreChanges(WarehouseChanges changes) {
+        for (Material material : changes.changed().keySet()) {
+            if (!removedMaterials.contains(material)) {
+                changedMaterials.add(material);
+            }
+        }
+        for (Material material : changes.removed()) {
+            if (!changedMaterials.contains(material)) {
+                removedMaterials.add(material);
+            }
+        }
+        this.dirty = true;
+    }
+
+    private synchronized void markChanged(Material material) {
+        changedMaterials.add(material);
+        removedMaterials.remove(material);
+        this.dirty = true;
+    }
+
+    private synchronized void markRemoved(Material material) {
+        removedMaterials.add(material);
+        changedMaterials.remove(material);
+        this.dirty = true;
+    }
+
     @Override
     public @NotNull UUID getUuid() {
         return owner;
@@ -380,6 +446,9 @@ public class Warehouse implements CachedObject {
     public String toString() {
         return "Warehouse{" +
                 "expire=" + expire +
+                ", dirty=" + dirty +
+                ", changedMaterials=" + changedMaterials +
+                ", removedMaterials=" + removedMaterials +
                 ", owner=" + owner +
                 ", warehouseMap=" + warehouseMap +
                 '}';
@@ -0,0 +1,20 @@
+package dev.jsinco.malts.obj;
+
+import org.bukkit.Material;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compartments of a {@link Warehouse} which changed or were removed since it was last saved.
+ *
+ * @param changed copies of the stock of every changed compartment
+ * @param removed materials of every removed compartment
+ * @see Warehouse#drainChanges()
+ */
+public record WarehouseChanges(Map<Material, Stock> changed, Set<Material> removed) {
+
+    public boolean isEmpty() {
+        return changed.isEmpty() && removed.isEmpty();
+    }
+}
@@ -16,11 +16,15 @@ import dev.jsinco.malts.obj.MaltsPlayer;
 import dev.jsinco.malts.obj.SnapshotVault;
 import dev.jsinco.malts.obj.Stock;
 import dev.jsinco.malts.obj.Vault;
+import dev.jsinco.malts.obj.VaultChanges;
+import dev.jsinco.malts.obj.VaultContentScanner;
 import dev.jsinco.malts.obj.VaultKey;
+import dev.jsinco.malts.obj.VaultSlot;
+import dev.jsinco.malts.obj.VaultSnapshot;
 import dev.jsinco.malts.obj.Warehouse;
+import dev.jsinco.malts.obj.WarehouseChanges;
 import dev.jsinco.malts.utility.Couple;
 import dev.jsinco.malts.utility.Executors;
-import dev.jsinco.malts.utility.FileUtil;
 import dev.jsinco.malts.utility.Text;
 import dev.jsinco.malts.utility.Util;
 import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
@@ -28,61 +32,138 @@ import lombok.Getter;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.nio.file.Path;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 public abstract class DataSource {
 
     public static final Path DATA_FOLDER = Malts.getInstance().getDataPath();
     private static final int SAVE_INTERVAL_SECONDS = 60;
     private static final int TASK_INTERVAL_SECONDS = 2;
+    private static final int SEARCH_SESSION_SECONDS = 60;
+    private static final int STREAM_BATCH_SIZE = 100;
 
     @Getter
     private static DataSource instance;
 
     protected final ExecutorService singleThread = Executors.newSingleThreadExecutor();
-    private final ConcurrentLinkedQueue<CachedObject> cachedObjects = new ConcurrentLinkedQueue<>();
-    private final ConcurrentHashMap<VaultKey, Object> vaultLocks = new ConcurrentHashMap<>();
+    private final ObjectCache cachedObjects = new ObjectCache();
+    @Getter
+    private final SingleFlight loads = new SingleFlight();
+    @Getter
+    private final VaultLocks vaultLocks;
+    @Getter
+    private final VaultSaveQueue vaultSaveQueue;
+    @Getter
+    private final StatementCatalog statementCatalog;
+    @Getter
+    private final KeySchema keySchema;
+    @Getter
+    private final VaultCache vaultCache;
+    @Getter
+    private final SearchSessions searchSessions = new SearchSessions(SEARCH_SESSION_SECONDS, TimeUnit.SECONDS);
+    private final int vaultCompactionThreshold;
+    private final int locatorPageSize;
+    private final long locatorTimeBudget;
+    @Getter
+    private final ItemReencoder itemReencoder;
+    // Vaults saved while the content index is still being built, see #wasVaultWrittenSince
+    private final AtomicLong vaultWriteSequence = new AtomicLong();
+    private final Map<VaultKey, Long> lastVaultWrite = new ConcurrentHashMap<>();
+    private volatile boolean vaultIndexComplete = true;
+    private final LongAdder skippedVaultSaves = new LongAdder();
+    private final SnapshotMetrics vaultSnapshots = new SnapshotMetrics("VaultSnapshots");
+    private final SnapshotMetrics warehouseSnapshots = new SnapshotMetrics("WarehouseSnapshots");
 
     @Getter
     private final HikariDataSource hikari;
+    @Getter @Nullable
+    private final HikariDataSource readHikari;
     private ScheduledTask cacheTask;
 
     public abstract HikariConfig hikariConfig(Config.Storage config);
-    public abstract CompletableFuture<Void> createTables();
 
-    public abstract CompletableFuture<@Nullable Vault> getVault(UUID owner, int id, boolean createIfNull);
-    public abstract CompletableFuture<@Nullable Vault> getVault(UUID owner, String customName);
+    /**
+     * Configures an optional pool used only for reads. When this returns null,
+     * reads share the main pool.
+     *
+     * @param config the storage config
+     * @return the read pool config, or null to read from the main pool
+     */
+    @Nullable
+    public HikariConfig readHikariConfig(Config.Storage config) {
+        return null;
+    }
 
+    public abstract CompletableFuture<Void> createTables();
+
+    /**
+     * Reads a vault from storage, bypassing the {@link VaultCache}.
+     * Use {@link #getVault(UUID, int, boolean)} instead.
+     */
+    protected abstract CompletableFuture<@Nullable Vault> loadVault(UUID owner, int id, boolean createIfNull);
+    /**
+     * Reads a vault from storage by its name, bypassing the {@link VaultCache}.
+     * Use {@link #getVault(UUID, String)} instead.
+     */
+    protected abstract CompletableFuture<@Nullable Vault> loadVault(UUID owner, String customName);
+
+    /**
+     * Gets the metadata of every vault owned by a player, without reading their contents.
+     */
     public abstract CompletableFuture<@NotNull Collection<SnapshotVault>> getVaults(UUID owner);
-    public abstract CompletableFuture<Void> saveVault(Vault vault);
+    public abstract CompletableFuture<@NotNull Boolean> hasVaults(UUID owner);
+    /**
+     * Writes a batch of vaults in a single transaction.
+     * Called by the {@link VaultSaveQueue}, use {@link #saveVault(Vault)} instead.
+     */
+    protected abstract CompletableFuture<Void> saveVaults(Collection<VaultSnapshot> vaults);
     public abstract CompletableFuture<@NotNull Boolean> deleteVault(UUID owner, int id);
     public abstract CompletableFuture<@NotNull Integer> deleteVaults(UUID owner);
-    public abstract CompletableFuture<@NotNull Collection<Vault>> getAllVaults(); // Used for exporting vaults. (Mainly to other plugins)
     public abstract CompletableFuture<@NotNull List<String>> getVaultNames(UUID owner);
 
 
-    public abstract CompletableFuture<@NotNull Warehouse> getWarehouse(UUID owner);
-    public abstract CompletableFuture<Void> saveWarehouse(Warehouse warehouse);
+    /**
+     * Reads a warehouse from storage. Use {@link #getWarehouse(UUID)} instead.
+     */
+    protected abstract CompletableFuture<@NotNull Warehouse> loadWarehouse(UUID owner);
+    /**
+     * Writes the changes drained from a warehouse. Use {@link #saveWarehouse(Warehouse)} instead.
+     */
+    protected abstract CompletableFuture<Void> saveWarehouseChanges(Warehouse warehouse, WarehouseChanges changes);
 
-    public abstract CompletableFuture<@NotNull MaltsPlayer> getMaltsPlayer(UUID uuid);
+    /**
+     * Reads a player from storage. Use {@link #getMaltsPlayer(UUID)} instead.
+     */
+    protected abstract CompletableFuture<@NotNull MaltsPlayer> loadMaltsPlayer(UUID uuid);
     public abstract CompletableFuture<Void> saveMaltsPlayer(MaltsPlayer maltsPlayer);
 
     // Metrics
@@ -95,6 +176,123 @@ public abstract class DataSource {
         return getVault(owner, id, true);
     }
 
+    /**
+     * Gets a vault from the {@link VaultCache}, or reads it from storage if it isn't cached.
+     *
+     * @param owner the owner of the vault
+     * @param id the id of the vault
+     * @param createIfNull whether to create a new, unsaved vault if it doesn't exist
+     * @return the vault, or null if it doesn't exist and createIfNull is false
+     */
+    public CompletableFuture<@Nullable Vault> getVault(UUID owner, int id, boolean createIfNull) {
+        VaultKey key = VaultKey.of(owner, id);
+        Vault cached = vaultCache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return loads.load(new LoadKey(Vault.class, key, createIfNull),
+                () -> this.loadVault(owner, id, createIfNull).thenApply(this::cacheLoadedVault));
+    }
+
+    public CompletableFuture<@Nullable Vault> getVault(UUID owner, String customName) {
+        return loads.load(new LoadKey(Vault.class, owner, customName),
+                () -> this.loadVault(owner, customName).thenApply(this::cacheLoadedVault));
+    }
+
+    /**
+     * Gets a player's warehouse from the cache, or reads it from storage if it isn't cached.
+     * Concurrent reads of the same warehouse share one query and one instance.
+     * The result is not cached, see {@link #cacheObject(CompletableFuture)}.
+     */
+    public CompletableFuture<@NotNull Warehouse> getWarehouse(UUID owner) {
+        Warehouse cached = this.cachedObject(owner, Warehouse.class);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return loads.load(new LoadKey(Warehouse.class, owner, null), () -> this.loadWarehouse(owner));
+    }
+
+    /**
+     * Gets a player from the cache, or reads it from storage if it isn't cached.
+     * Concurrent reads of the same player share one query and one instance.
+     * The result is not cached, see {@link #cacheObject(CompletableFuture)}.
+     */
+    public CompletableFuture<@NotNull MaltsPlayer> getMaltsPlayer(UUID uuid) {
+        MaltsPlayer cached = this.cachedObject(uuid, MaltsPlayer.class);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return loads.load(new LoadKey(MaltsPlayer.class, uuid, null), () -> this.loadMaltsPlayer(uuid));
+    }
+
+    @Nullable
+    private Vault cacheLoadedVault(@Nullable Vault vault) {
+        // Newly created vaults aren't cached until they're saved, so they keep counting as nonexistent
+        if (vault == null || vault.getStoredBytes() <= 0) {
+            return vault;
+        }
+        return vaultCache.putIfAbsent(vault);
+    }
+
+    /**
+     * Queues a vault to be saved. Repeated saves of the same vault are collapsed
+     * and written together with other queued vaults in one batch.
+     * <p>
+     * The vault is snapshotted on the main thread, where vaults are modified, right away if
+     * this is called on it. It's serialized and written on the database threads later.
+     *
+     * @param vault the vault to save
+     * @return a future which completes once the vault has been written, or exceptionally if the write failed
+     */
+    public CompletableFuture<Void> saveVault(Vault vault) {
+        if (!Bukkit.isPrimaryThread() && !Malts.isShutdown()) {
+            return Executors.supplySync(() -> this.saveVault(vault)).thenCompose(Function.identity());
+        }
+        VaultSnapshot snapshot = vaultSnapshots.time(vault::snapshot);
+        vaultCache.put(vault);
+        return vaultSaveQueue.enqueue(snapshot);
+    }
+
+    /**
+     * Same as {@link #saveVault(Vault)}, but skips the write entirely if the vault's
+     * contents and metadata are the same as what storage already holds.
+     *
+     * @param vault the vault to save
+     * @return a future which completes once the vault has been written, or right away if it was skipped
+     */
+    public CompletableFuture<Void> saveVaultIfChanged(Vault vault) {
+        if (!Bukkit.isPrimaryThread() && !Malts.isShutdown()) {
+            return Executors.supplySync(() -> this.saveVaultIfChanged(vault)).thenCompose(Function.identity());
+        }
+        if (vault.isUnchangedSinceSave()) {
+            skippedVaultSaves.increment();
+            return CompletableFuture.completedFuture(null);
+        }
+        return this.saveVault(vault);
+    }
+
+    /**
+     * Saves the compartments of a warehouse which changed since its last save.
+     * The changes are drained on the main thread, where the warehouse is modified,
+     * and written on the database threads.
+     *
+     * @param warehouse the warehouse to save
+     * @return a future which completes once the changes have been written
+     */
+    public CompletableFuture<Void> saveWarehouse(Warehouse warehouse) {
+        return Executors.supplySync(() -> warehouseSnapshots.time(warehouse::drainChanges))
+                .thenCompose(changes -> changes.isEmpty()
+                        ? CompletableFuture.completedFuture(null)
+                        : this.saveWarehouseChanges(warehouse, changes));
+    }
+
+    /**
+     * @return how many vault saves were skipped because nothing had changed
+     */
+    public long getSkippedVaultSaves() {
+        return skippedVaultSaves.sum();
+    }
+
     public void getVaultWithEconomy(Player player, int id, Consumer<@NotNull Vault> consumer) {
         Config.Economy economy = ConfigManager.get(Config.class).economy();
         Lang lang = ConfigManager.get(Lang.class);
@@ -131,59 +329,146 @@ public abstract class DataSource {
 
 
     public DataSource(Config.Storage config) {
+        this.statementCatalog = new StatementCatalog(config.driver());
+        this.keySchema = new KeySchema(config.keyEncoding(), config.driver(), statementCatalog);
+        this.vaultCompactionThreshold = config.vaultCompactionThreshold();
+        this.locatorPageSize = config.locatorPageSize();
+        this.locatorTimeBudget = config.locatorTimeBudget();
+        this.vaultCache = new VaultCache(config.vaultCacheSize() * 1024L * 1024L);
+        this.vaultLocks = new VaultLocks(config.vaultLockTimeout());
         this.hikari = new HikariDataSource(this.hikariConfig(config));
+        // Opened after the main pool so any database settings applied by the writer are already in place
+        HikariConfig readConfig = this.readHikariConfig(config);
+        this.readHikari = readConfig != null ? new HikariDataSource(readConfig) : null;
+        // Reads are the bulk of the work, one thread per connection they can use
+        HikariDataSource readPool = readHikari != null ? readHikari : hikari;
+        Executors.startDatabaseExecutor(readPool.getMaximumPoolSize(), config.databaseQueueCapacity(), config.virtualThreads());
+        this.vaultSaveQueue = new VaultSaveQueue(config.saveBatchWindow(), this::saveVaults);
+        this.itemReencoder = new ItemReencoder(this, command -> this.writeExecutor().execute(command), config.driver().getDialect(),
+                config.reencodeItems(), config.reencodeBatchSize(), config.reencodeBatchDelay());
+    }
+
+    /**
+     * Gets the executor writes which aren't part of a vault or warehouse save run on.
+     */
+    protected Executor writeExecutor() {
+        return Executors.databaseExecutor();
     }
 
     public Connection connection() throws SQLException {
         return hikari.getConnection();
     }
 
+    /**
+     * Gets a connection for queries which don't modify anything.
+     * Comes from the read pool if this data source has one.
+     */
+    public Connection readConnection() throws SQLException {
+        return readHikari != null ? readHikari.getConnection() : hikari.getConnection();
+    }
+
+    /**
+     * Runs a vault query once every queued save for the owner has been written,
+     * so reads never return older data than what was last saved.
+     */
+    protected <T> CompletableFuture<T> afterPendingSaves(UUID owner, Supplier<CompletableFuture<T>> query) {
+        return vaultSaveQueue.awaitOwner(owner)
+                .handle((unused, throwable) -> null)
+                .thenCompose(unused -> query.get());
+    }
+
+    /**
+     * Same as {@link #afterPendingSaves(UUID, Supplier)} but waits for every queued save.
+     */
+    protected <T> CompletableFuture<T> afterPendingSaves(Supplier<CompletableFuture<T>> query) {
+        return vaultSaveQueue.flush()
+                .handle((unused, throwable) -> null)
+                .thenCompose(unused -> query.get());
+    }
+
     public CompletableFuture<Void> setup() {
         AtomicInteger count = new AtomicInteger(0);
-        return this.createTables().thenRun(() -> this.cacheTask = Executors.runRepeatingAsync(TASK_INTERVAL_SECONDS, TimeUnit.SECONDS, task -> {
+        return this.createTables().thenRun(itemReencoder::start).thenRun(() -> this.cacheTask = Executors.runRepeatingAsync(TASK_INTERVAL_SECONDS, TimeUnit.SECONDS, task -> {
             int intervalCount = count.getAndAdd(TASK_INTERVAL_SECONDS);
+            boolean saveInterval = intervalCount >= SAVE_INTERVAL_SECONDS;
+            AtomicInteger saved = new AtomicInteger();
+            AtomicInteger skipped = new AtomicInteger();
 
-            for (CachedObject cachedObject : cachedObjects) {
-                if (intervalCount >= SAVE_INTERVAL_SECONDS) {
-                    Text.debug("Cached Objects size: " + cachedObjects.size());
-                    Text.debug("Saved CachedObject " + cachedObject.getClass().getSimpleName() + ": " + cachedObject.getUuid());
-                    cachedObject.save(this);
-                }
-
+            cachedObjects.forEach(cachedObject -> {
                 if (cachedObject.isExpired()) {
-                    cachedObject.save(this);
+                    flush(cachedObject);
                     cachedObjects.remove(cachedObject);
                     //new CachedObjectEvent(this, cachedObject, EventAction.REMOVE).callEvent();
                     Text.debug("Uncached " + cachedObject.getClass().getSimpleName() + ": " + cachedObject.getUuid() + " because it was expired");
+                } else if (saveInterval) {
+                    if (flush(cachedObject) != null) {
+                        saved.incrementAndGet();
+                        Text.debug("Saved CachedObject " + cachedObject.getClass().getSimpleName() + ": " + cachedObject.getUuid());
+                    } else {
+                        skipped.incrementAndGet();
+                    }
                 }
-            }
-
-            if (intervalCount >= SAVE_INTERVAL_SECONDS) {
+            });
+
+            searchSessions.expire();
+
+            if (saveInterval) {
+                Text.debug("Cached Objects size: " + cachedObjects.size() + ", saved: " + saved.get() + ", skipped (unchanged): " + skipped.get());
+                Text.debug(vaultCache.toString());
+                Text.debug(searchSessions.toString());
+                Text.debug(vaultLocks.toString());
+                Text.debug(vaultSaveQueue + ", skipped (unchanged): " + this.getSkippedVaultSaves());
+                Text.debug(vaultSnapshots + ", " + warehouseSnapshots);
+                Text.debug(String.valueOf(Executors.getDatabaseExecutor()));
                 count.set(0);
             }
         }));
     }
 
-    public String[] getStatements(String path) {
-        String[] statements = FileUtil.readInternalResource("sql/" + path).split(";");
-        // re-append the semicolon to each statement
-        for (int i = 0; i < statements.length; i++) {
-            statements[i] = statements[i].trim() + ";";
+    /**
+     * Saves a cached object if it has changed since it was last saved.
+     * The dirty flag is cleared before the save starts so changes made
+     * while the save is in flight will be picked up by the next flush.
+     *
+     * @param cachedObject the object to save
+     * @return the save future, or null if the object was unchanged and skipped
+     */
+    @Nullable
+    private CompletableFuture<Void> flush(CachedObject cachedObject) {
+        if (!cachedObject.isDirty()) {
+            return null;
         }
-        return statements;
+        // Cleared before saving so changes made during the write aren't lost,
+        // a failed write marks the object dirty again
+        cachedObject.setDirty(false);
+        return cachedObject.save(this);
+    }
+
+    protected void setUuid(PreparedStatement statement, int index, UUID uuid) throws SQLException {
+        keySchema.setUuid(statement, index, uuid);
+    }
+
+    protected UUID getUuid(ResultSet rs, String column) throws SQLException {
+        return keySchema.getUuid(rs, column);
+    }
+
+    public String[] getStatements(String path) {
+        return statementCatalog.getAll(path);
     }
 
     public String getStatement(String path) {
-        return FileUtil.readInternalResource("sql/" + path);
+        return statementCatalog.get(path);
     }
 
     public CompletableFuture<Void> clearCache() {
         List<CompletableFuture<Void>> futures = new ArrayList<>();
 
-        for (CachedObject cachedObject : cachedObjects) {
-            // Assuming save() returns a CompletableFuture<Void>
-            futures.add(cachedObject.save(this));
-        }
+        cachedObjects.forEach(cachedObject -> {
+            CompletableFuture<Void> future = flush(cachedObject);
+            if (future != null) {
+                futures.add(future);
+            }
+        });
 
         cachedObjects.clear();
 
@@ -193,21 +478,35 @@ public abstract class DataSource {
 
     // TODO: Better logging
     public CompletableFuture<Void> close() {
+        itemReencoder.stop();
         // Wait for all saves to complete, then close hikari
-        return clearCache()
+        return vaultSaveQueue.flush()
+                .handle((unused, throwable) -> {
+                    if (throwable != null) {
+                        Text.error("Failed to write queued vault saves before closing", throwable);
+                    }
+                    return null;
+                })
+                .thenCompose(unused -> clearCache())
+                .thenRun(vaultCache::clear)
+                .thenRun(searchSessions::clear)
                 .exceptionally(ex -> {
                     ex.printStackTrace();
                     return null;
                 })
                 .thenRun(() -> {
                     cacheTask.cancel();
+                    if (readHikari != null) {
+                        readHikari.close();
+                    }
                     hikari.close();
                     singleThread.shutdown();
+                    Executors.shutdownDatabaseExecutor();
                 });
     }
 
     public TriState isClosed() {
-        boolean hikariClosed = hikari.isClosed();
+        boolean hikariClosed = hikari.isClosed() && (readHikari == null || readHikari.isClosed());
         boolean singleThreadClosed = singleThread.isShutdown();
         boolean cacheTaskClosed = cacheTask.isCancelled();
         if (hikariClosed && singleThreadClosed && cacheTaskClosed) {
@@ -222,14 +521,7 @@ public abstract class DataSource {
     @Nullable
     public Vault mapVault(ResultSet rs, UUID owner, int id, boolean create) throws SQLException {
         if (rs.next()) {
-            return new Vault(
-                    owner,
-                    id,
-                    rs.getString("inventory"),
-                    rs.getString("custom_name"),
-                    Material.getMaterial(rs.getString("icon")),
-                    rs.getString("trusted_players")
-            );
+            return this.readVault(rs, owner, id);
         }
         return create ? new Vault(owner, id) : null;
     }
@@ -237,33 +529,458 @@ public abstract class DataSource {
     @Nullable
     public Vault mapVault(ResultSet rs, UUID owner) throws SQLException {
         if (rs.next()) {
-            return new Vault(
-                    owner,
-                    rs.getInt("id"),
-                    rs.getString("inventory"),
-                    rs.getString("custom_name"),
-                    Material.getMaterial(rs.getString("icon")),
-                    rs.getString("trusted_players")
-            );
+            return this.readVault(rs, owner, rs.getInt("id"));
         }
         return null;
     }
 
-    public List<Vault> mapVaults(ResultSet rs) throws SQLException {
+    /**
+     * Reads the vault at the current row. Vaults saved before binary payloads
+     * existed are read from their legacy Base64 column and converted on their next save.
+     */
+    private Vault readVault(ResultSet rs, UUID owner, int id) throws SQLException {
+        byte[] inventoryData = rs.getBytes("inventory_data");
+        String customName = rs.getString("custom_name");
+        Material icon = Material.getMaterial(rs.getString("icon"));
+        String trustedPlayers = rs.getString("trusted_players");
+
+        if (inventoryData != null) {
+            Vault vault = new Vault(owner, id, inventoryData, customName, icon, trustedPlayers);
+            vault.loadSlotDeltas(Map.of()); // Marks the base as saved, stored deltas are applied on top afterwards
+            vault.setStoredBytes(inventoryData.length);
+            return vault;
+        }
+        // Legacy rows have no saved contents, so their next save rewrites them in full
+        String inventory = rs.getString("inventory");
+        Vault vault = new Vault(owner, id, inventory, customName, icon, trustedPlayers);
+        vault.setStoredBytes(Math.max(1, inventory != null ? inventory.length() : 0));
+        return vault;
+    }
+
+    /**
+     * Applies a vault's stored slot deltas on top of its base inventory.
+     *
+     * @param connection the connection the vault was read with
+     * @param vault the vault, may be null
+     * @return the same vault
+     */
+    @Nullable
+    protected Vault loadSlotDeltas(Connection connection, @Nullable Vault vault) throws SQLException {
+        if (vault == null || !vault.hasSavedContents()) {
+            return vault;
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(this.getStatement("vaults/select_vault_slots.sql"))) {
+            this.setUuid(statement, 1, vault.getOwner());
+            statement.setInt(2, vault.getId());
+            ResultSet rs = statement.executeQuery();
+
+            Map<Integer, ItemStack> deltas = new HashMap<>();
+            int deltaBytes = 0;
+            while (rs.next()) {
+                byte[] item = rs.getBytes("item");
+                deltas.put(rs.getInt("slot"), Vault.decodeSlot(item));
+                deltaBytes += item != null ? item.length : 0;
+            }
+            if (!deltas.isEmpty()) {
+                vault.loadSlotDeltas(deltas);
+                vault.setStoredBytes(vault.getStoredBytes() + deltaBytes);
+            }
+        }
+        return vault;
+    }
+
+    /**
+     * Writes a batch of vaults in one transaction. Vaults with few changes since their
+     * last save only have their changed slots and metadata written. Vaults which were never
+     * stored as a binary payload, or which collected too many slot deltas, are rewritten
+     * in full and their slot deltas are dropped.
+     *
+     * @param connection the connection to write with
+     * @param snapshots snapshots of the vaults to write
+     * @param upsertVaultPath the dialect specific statement to insert or update a vault
+     * @param upsertSlotPath the dialect specific statement to insert or update a slot delta
+     */
+    protected void writeVaults(Connection connection, Collection<VaultSnapshot> snapshots, String upsertVaultPath, String upsertSlotPath) throws SQLException {
+        Map<Vault, VaultSnapshot> snapshotsByVault = new HashMap<>();
+        Map<Vault, VaultChanges> written = new LinkedHashMap<>();
+        for (VaultSnapshot snapshot : snapshots) {
+            Vault vault = snapshot.vault();
+            snapshotsByVault.put(vault, snapshot);
+            written.put(vault, vault.changesSinceSave(snapshot, vaultCompactionThreshold));
+        }
+        Map<Vault, Integer> bytesWritten = new HashMap<>();
+        int fullWrites = 0;
+        int slotWrites = 0;
+
+        connection.setAutoCommit(false);
+        try {
+            // Metadata first, a vault whose row is gone (e.g. deleted while open) has to be rewritten in full
+            List<Vault> deltaVaults = new ArrayList<>();
+            written.forEach((vault, changes) -> {
+                if (!changes.compact()) {
+                    deltaVaults.add(vault);
+                }
+            });
+            if (!deltaVaults.isEmpty()) {
+                try (PreparedStatement statement = connection.prepareStatement(this.getStatement("vaults/update_vault_metadata.sql"))) {
+                    for (Vault vault : deltaVaults) {
+                        VaultSnapshot snapshot = snapshotsByVault.get(vault);
+                        statement.setString(1, snapshot.customName());
+                        statement.setString(2, snapshot.icon().toString());
+                        statement.setString(3, snapshot.trustedPlayers());
+                        this.setUuid(statement, 4, vault.getOwner());
+                        statement.setInt(5, vault.getId());
+                        statement.addBatch();
+                    }
+                    int[] updated = statement.executeBatch();
+                    for (int i = 0; i < updated.length; i++) {
+                        if (updated[i] == 0) {
+                            Vault vault = deltaVaults.get(i);
+                            written.put(vault, new VaultChanges(written.get(vault).contents(), List.of(), true));
+                        }
+                    }
+                }
+            }
+
+            try (PreparedStatement fullStatement = connection.prepareStatement(this.getStatement(upsertVaultPath));
+                 PreparedStatement clearSlotsStatement = connection.prepareStatement(this.getStatement("vaults/delete_vault_slots.sql"));
+                 PreparedStatement slotStatement = connection.prepareStatement(this.getStatement(upsertSlotPath))) {
+
+                for (Map.Entry<Vault, VaultChanges> entry : written.entrySet()) {
+                    Vault vault = entry.getKey();
+                    VaultChanges changes = entry.getValue();
+                    VaultSnapshot snapshot = snapshotsByVault.get(vault);
+                    UUID owner = vault.getOwner();
+
+                    if (changes.compact()) {
+                        byte[] inventoryData = Vault.encodeInventoryData(changes.contents());
+                        bytesWritten.put(vault, inventoryData.length);
+
+                        this.setUuid(fullStatement, 1, owner);
+                        fullStatement.setInt(2, vault.getId());
+                        fullStatement.setString(3, ""); // Legacy Base64 column, cleared once a vault is stored as binary
+                        fullStatement.setBytes(4, inventoryData);
+                        fullStatement.setString(5, snapshot.customName());
+                        fullStatement.setString(6, snapshot.icon().toString());
+                        fullStatement.setString(7, snapshot.trustedPlayers());
+                        fullStatement.addBatch();
+
+                        this.setUuid(clearSlotsStatement, 1, owner);
+                        clearSlotsStatement.setInt(2, vault.getId());
+                        clearSlotsStatement.addBatch();
+                        fullWrites++;
+                        continue;
+                    }
+
+                    int slotBytes = vault.getStoredBytes();
+                    for (int slot : changes.changedSlots()) {
+                        byte[] item = Vault.encodeSlot(changes.contents()[slot]);
+                        slotBytes += item != null ? item.length : 0;
+
+                        this.setUuid(slotStatement, 1, owner);
+                        slotStatement.setInt(2, vault.getId());
+                        slotStatement.setInt(3, slot);
+                        slotStatement.setBytes(4, item);
+                        slotStatement.addBatch();
+                        slotWrites++;
+                    }
+                    bytesWritten.put(vault, slotBytes);
+                }
+
+                if (fullWrites > 0) {
+                    fullStatement.executeBatch();
+                    clearSlotsStatement.executeBatch();
+                }
+                if (slotWrites > 0) {
+                    slotStatement.executeBatch();
+                }
+            }
+            this.writeVaultIndex(connection, written);
+            connection.commit();
+        } catch (SQLException ex) {
+            connection.rollback();
+            throw ex;
+        }
+        written.keySet().forEach(vault -> searchSessions.invalidate(vault.getOwner()));
+        if (!vaultIndexComplete) {
+            long sequence = vaultWriteSequence.incrementAndGet();
+            written.keySet().forEach(vault -> lastVaultWrite.put(vault.getKey(), sequence));
+        }
+
+        // Only now is storage guaranteed to hold these contents
+        written.forEach((vault, changes) -> {
+            vault.markSaved(snapshotsByVault.get(vault), changes);
+            vault.setStoredBytes(bytesWritten.getOrDefault(vault, vault.getStoredBytes()));
+            vaultCache.put(vault); // Re-weighed with its new size
+        });
+        Text.debug("Saved " + written.size() + " vault(s) in one batch: " + fullWrites + " rewritten in full, " + slotWrites + " changed slot(s) written");
+    }
+
+    /**
+     * Updates the content index for the slots written by {@link #writeVaults(Connection, Collection, String, String)},
+     * in the same transaction. Vaults rewritten in full are reindexed entirely, as is every
+     * vault while the index is still being built for vaults saved before it existed.
+     *
+     * @param connection the connection to write with
+     * @param written the changes written for each vault
+     */
+    private void writeVaultIndex(Connection connection, Map<Vault, VaultChanges> written) throws SQLException {
+        int clearedVaults = 0;
+        int clearedSlots = 0;
+        int inserted = 0;
+
+        try (PreparedStatement clearVaultStatement = connection.prepareStatement(this.getStatement("index/delete_vault_index.sql"));
+             PreparedStatement clearSlotStatement = connection.prepareStatement(this.getStatement("index/delete_vault_index_slot.sql"));
+             PreparedStatement insertStatement = connection.prepareStatement(this.getStatement("index/insert_vault_index.sql"))) {
+
+            for (Map.Entry<Vault, VaultChanges> entry : written.entrySet()) {
+                Vault vault = entry.getKey();
+                VaultChanges changes = entry.getValue();
+                ItemStack[] contents = changes.contents();
+                List<Integer> slots;
+
+                if (changes.compact() || !vaultIndexComplete) {
+                    this.setUuid(clearVaultStatement, 1, vault.getOwner());
+                    clearVaultStatement.setInt(2, vault.getId());
+                    clearVaultStatement.addBatch();
+                    clearedVaults++;
+                    slots = IntStream.range(0, contents.length).boxed().toList();
+                } else {
+                    for (int slot : changes.changedSlots()) {
+                        this.setUuid(clearSlotStatement, 1, vault.getOwner());
+                        clearSlotStatement.setInt(2, vault.getId());
+                        clearSlotStatement.setInt(3, slot);
+                        clearSlotStatement.addBatch();
+                        clearedSlots++;
+                    }
+                    slots = changes.changedSlots();
+                }
+
+                for (int slot : slots) {
+                    ItemStack item = contents[slot];
+                    if (item == null) {
+                        continue;
+                    }
+                    this.setUuid(insertStatement, 1, vault.getOwner());
+                    insertStatement.setInt(2, vault.getId());
+                    insertStatement.setInt(3, slot);
+                    insertStatement.setString(4, VaultContentScanner.searchableText(item));
+                    insertStatement.addBatch();
+                    inserted++;
+                }
+            }
+
+            // Cleared first, a reindexed slot is deleted and inserted again
+            if (clearedVaults > 0) {
+                clearVaultStatement.executeBatch();
+            }
+            if (clearedSlots > 0) {
+                clearSlotStatement.executeBatch();
+            }
+            if (inserted > 0) {
+                insertStatement.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Searches the content index for items in a player's vaults.
+     * Matches the same items as {@link VaultContentScanner} without reading any vault contents.
+     *
+     * @param owner the owner of the vaults
+     * @param query the text to search for
+     * @return every matching slot, ordered by vault and slot
+     */
+    public CompletableFuture<@NotNull List<VaultSlot>> searchVaults(UUID owner, String query) {
+        String searchFor = query.toLowerCase().strip();
+        return this.afterPendingSaves(owner, () -> Executors.supplyAsyncWithSQLException(() -> {
+            List<VaultSlot> matches = new ArrayList<>();
+            try (Connection connection = this.readConnection();
+                 PreparedStatement statement = connection.prepareStatement(this.getStatement("index/search_vault_index.sql"))) {
+                this.setUuid(statement, 1, owner);
+                statement.setString(2, containsPattern(searchFor));
+                // Material names use underscores where the query may have spaces
+                statement.setString(3, containsPattern(searchFor.replace(" ", "_")));
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        matches.add(new VaultSlot(rs.getInt("id"), rs.getInt("slot")));
+                    }
+                }
+            }
+            return matches;
+        }));
+    }
+
+    /**
+     * Sets whether every stored vault is in the content index. While it isn't, saves
+     * reindex whole vaults and are remembered so the {@link ItemReencoder} doesn't
+     * overwrite them with what it read before.
+     */
+    void setVaultIndexComplete(boolean complete) {
+        this.vaultIndexComplete = complete;
+        if (complete) {
+            lastVaultWrite.clear();
+        }
+    }
+
+    /**
+     * Searches every player's vaults and warehouses in the background, see {@link ItemLocator}.
+     * Runs on the async scheduler rather than the database executor, so a long search
+     * doesn't hold up other database work.
+     *
+     * @param filter what to look for
+     * @param progress told how far along the search is every few seconds, from the searching thread
+     * @return everything found before the search finished or ran out of time
+     */
+    public CompletableFuture<ItemLocator.Result> locateItems(ItemLocator.Filter filter, Consumer<ItemLocator.Progress> progress) {
+        ItemLocator locator = new ItemLocator(this, filter, locatorPageSize, locatorTimeBudget, progress);
+        return vaultSaveQueue.flush()
+                .handle((unused, throwable) -> null)
+                .thenCompose(unused -> Executors.supplyAsyncWithSQLException(locator::run,
+                        Executors.asyncExecutor()));
+    }
+
+    /**
+     * Streams every stored vault to a consumer without holding them all in memory.
+     * Rows are read with a forward-only cursor which fetches {@code batchSize} rows at a time,
+     * and each vault is only decoded right before it's handed to the consumer, so it can be
+     * garbage collected as soon as the consumer is done with it.
+     * <p>
+     * Queued saves are flushed first. Like {@link #locateItems(ItemLocator.Filter, Consumer)}
+     * this runs on the async scheduler, the consumer is called from that thread and must not
+     * touch anything which has to be used from the main thread.
+     *
+     * @param batchSize how many rows to fetch from the database at a time
+     * @param consumer called with each vault, throwing stops the stream
+     * @return how many vaults were streamed
+     */
+    public CompletableFuture<Long> forEachVault(int batchSize, Consumer<Vault> consumer) {
+        int fetchSize = Math.max(1, batchSize);
+        return this.afterPendingSaves(() -> Executors.supplyAsyncWithSQLException(() -> {
+            long streamed = 0;
+            try (Connection connection = this.readConnection();
+                 PreparedStatement statement = connection.prepareStatement(this.getStatement("vaults/select_all_vaults.sql"),
+                         ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(fetchSize);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        Vault vault = this.readVault(rs, this.getUuid(rs, "owner"), rs.getInt("id"));
+                        consumer.accept(this.loadSlotDeltas(connection, vault));
+                        streamed++;
+                    }
+                }
+            }
+            Text.debug("Streamed " + streamed + " vault(s)");
+            return streamed;
+        }, Executors.asyncExecutor()));
+    }
+
+    /**
+     * Reads every stored vault into memory at once.
+     *
+     * @deprecated every vault holds a live inventory, on large databases this runs out of memory.
+     * Use {@link #forEachVault(int, Consumer)} instead.
+     */
+    @Deprecated
+    public CompletableFuture<@NotNull Collection<Vault>> getAllVaults() {
         List<Vault> vaults = new ArrayList<>();
-        while (rs.next()) {
-            vaults.add(
-                    new Vault(
-                            UUID.fromString(rs.getString("owner")),
-                            rs.getInt("id"),
-                            rs.getString("inventory"),
-                            rs.getString("custom_name"),
-                            Material.getMaterial(rs.getString("icon")),
-                            rs.getString("trusted_players")
-                    )
-            );
+        return this.forEachVault(STREAM_BATCH_SIZE, vaults::add).thenApply(streamed -> vaults);
+    }
+
+    public boolean isVaultIndexComplete() {
+        return vaultIndexComplete;
+    }
+
+    long getVaultWriteSequence() {
+        return vaultWriteSequence.get();
+    }
+
+    /**
+     * @param key the vault to check
+     * @param sequence a value of {@link #getVaultWriteSequence()}
+     * @return true if the vault was saved after the sequence was read
+     */
+    boolean wasVaultWrittenSince(VaultKey key, long sequence) {
+        Long written = lastVaultWrite.get(key);
+        return written != null && written > sequence;
+    }
+
+    private static String containsPattern(String text) {
+        String escaped = text.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+        return "%" + escaped + "%";
+    }
+
+    /**
+     * Writes a player's settings. If the write fails the player is marked dirty again,
+     * so the next save retries it.
+     *
+     * @param maltsPlayer the player to write
+     * @param upsertPath the dialect specific statement to insert or update a player
+     */
+    protected void writeMaltsPlayer(MaltsPlayer maltsPlayer, String upsertPath) throws SQLException {
+        try (Connection connection = this.connection();
+             PreparedStatement statement = connection.prepareStatement(this.getStatement(upsertPath))) {
+            this.setUuid(statement, 1, maltsPlayer.getUuid());
+            statement.setInt(2, maltsPlayer.getMaxVaults());
+            statement.setInt(3, maltsPlayer.getMaxWarehouseStock());
+            statement.setString(4, maltsPlayer.getWarehouseMode().name());
+            statement.setString(5, maltsPlayer.getQuickReturnClickType().name());
+            statement.executeUpdate();
+        } catch (SQLException ex) {
+            maltsPlayer.setDirty(true);
+            throw ex;
         }
-        return vaults;
+    }
+
+    /**
+     * Writes only the compartments of a warehouse which changed or were removed since its
+     * last save, in one transaction. If the write fails the changes are kept for the next save.
+     *
+     * @param warehouse the warehouse to write
+     * @param changes the changes drained from the warehouse on its owning thread
+     * @param upsertPath the dialect specific statement to insert or update a compartment
+     */
+    protected void writeWarehouse(Warehouse warehouse, WarehouseChanges changes, String upsertPath) throws SQLException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        UUID owner = warehouse.getOwner();
+
+        try (Connection connection = this.connection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement upsertStatement = connection.prepareStatement(this.getStatement(upsertPath));
+                 PreparedStatement deleteStatement = connection.prepareStatement(this.getStatement("warehouses/delete_warehouse_material.sql"))) {
+
+                for (Stock stock : changes.changed().values()) {
+                    this.setUuid(upsertStatement, 1, owner);
+                    keySchema.setMaterial(upsertStatement, 2, stock.getMaterial());
+                    upsertStatement.setInt(3, stock.getAmount());
+                    upsertStatement.setLong(4, stock.getLastUpdate());
+                    upsertStatement.addBatch();
+                }
+                for (Material material : changes.removed()) {
+                    this.setUuid(deleteStatement, 1, owner);
+                    keySchema.setMaterial(deleteStatement, 2, material);
+                    deleteStatement.addBatch();
+                }
+
+                if (!changes.changed().isEmpty()) {
+                    upsertStatement.executeBatch();
+                }
+                if (!changes.removed().isEmpty()) {
+                    deleteStatement.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException ex) {
+                connection.rollback();
+                throw ex;
+            }
+        } catch (SQLException ex) {
+            warehouse.restoreChanges(changes);
+            throw ex;
+        }
+        Text.debug("Saved warehouse: " + owner + " (" + changes.changed().size() + " changed, " + changes.removed().size() + " removed)");
     }
 
     public List<SnapshotVault> mapSnapshotVaults(ResultSet rs, UUID owner) throws SQLException {
@@ -297,14 +1014,12 @@ public abstract class DataSource {
         EnumMap<Material, Stock> warehouseMap = new EnumMap<>(Material.class);
 
         while (rs.next()) {
-            String mstring = rs.getString("material");
-
-            Material material = Material.matchMaterial(mstring);
+            Material material = keySchema.getMaterial(rs, "material");
             int quantity = rs.getInt("quantity");
             long lastUpdate = rs.getLong("last_update");
 
             if (material == null) {
-                throw new RuntimeException("Material " + mstring + " does not exist");
+                throw new RuntimeException("Material " + rs.getObject("material") + " does not exist");
             }
             warehouseMap.put(material, new Stock(material, quantity, lastUpdate));
         }
@@ -314,15 +1029,11 @@ public abstract class DataSource {
 
 
     @Nullable
-    @SuppressWarnings("unchecked")
     public <T extends CachedObject> T cachedObject(UUID uuid, Class<T> objectClass) {
         Preconditions.checkNotNull(uuid, "uuid cannot be null");
         Preconditions.checkNotNull(objectClass, "objectClass cannot be null");
 
-
-        return (T) cachedObjects.stream().filter(it ->
-            it.getClass().equals(objectClass) && it.getUuid().equals(uuid)
-        ).findFirst().orElse(null);
+        return cachedObjects.get(uuid, objectClass);
     }
 
     public <T extends CachedObject> CompletableFuture<T> cacheObjectWithDefaultExpire(CompletableFuture<T> future) {
@@ -344,34 +1055,22 @@ public abstract class DataSource {
                 return CompletableFuture.completedFuture(null);
             }
 
-            // First, try to find a cached version
-            synchronized (cachedObjects) {
-                for (CachedObject cached : cachedObjects) {
-                    if (cached.getClass().equals(obj.getClass()) &&
-                            cached.getUuid().equals(obj.getUuid())) {
-
-                        @SuppressWarnings("unchecked")
-                        T alreadyCached = (T) cached;
-                        if (expireTime != null) {
-                            long expireWhen = System.currentTimeMillis() + expireTime;
-                            alreadyCached.setExpire(expireWhen); // Update expire time
-                            Text.debug("Updated expire time for cached " + obj.getClass().getSimpleName() + ": " + obj.getUuid() + " to " + expireWhen);
-                        }
-                        Text.debug("Using cached " + obj.getClass().getSimpleName() + ": " + obj.getUuid());
-                        return CompletableFuture.completedFuture(alreadyCached);
-                    }
-                }
-            }
-
-            // Not found, cache the new object
+            // Set the expire time up front, it only sticks if this object ends up being the cached one
             if (expireTime != null) {
-                long expireWhen = System.currentTimeMillis() + expireTime;
-                obj.setExpire(expireWhen);
+                obj.setExpire(System.currentTimeMillis() + expireTime);
             }
-            synchronized (cachedObjects) {
-                cachedObjects.add(obj);
-                //new CachedObjectEvent(this, obj, EventAction.ADD).callEvent();
+
+            T cached = cachedObjects.putIfAbsent(obj);
+            if (cached != obj) {
+                if (expireTime != null) {
+                    long expireWhen = System.currentTimeMillis() + expireTime;
+                    cached.setExpire(expireWhen); // Update expire time
+                    Text.debug("Updated expire time for cached " + obj.getClass().getSimpleName() + ": " + obj.getUuid() + " to " + expireWhen);
+                }
+                Text.debug("Using cached " + obj.getClass().getSimpleName() + ": " + obj.getUuid());
+                return CompletableFuture.completedFuture(cached);
             }
+            //new CachedObjectEvent(this, obj, EventAction.ADD).callEvent();
 
             String expireMsg = expireTime != null ? " until " + expireTime : "";
             Text.debug("Caching " + obj.getClass().getSimpleName() + ": " + obj.getUuid() + expireMsg);
@@ -381,26 +1080,25 @@ public abstract class DataSource {
 
 
     public void uncacheObject(UUID uuid, Class<? extends CachedObject> objectClass) {
-        CachedObject cachedObject = cachedObject(uuid, objectClass);
+        CachedObject cachedObject = cachedObjects.remove(uuid, objectClass);
         if (cachedObject != null) {
             Text.debug("Uncaching " + cachedObject.getClass().getSimpleName() + ": " + cachedObject.getUuid());
-            cachedObject.save(this);
-            cachedObjects.remove(cachedObject);
+            flush(cachedObject);
             //new CachedObjectEvent(this, cachedObject, EventAction.REMOVE).callEvent();
         }
     }
 
 
     public boolean isLocked(VaultKey key) {
-        return vaultLocks.containsKey(key);
+        return vaultLocks.isLocked(key);
     }
 
     public void lock(VaultKey key) {
-        vaultLocks.put(key, new Object());
+        vaultLocks.lock(key);
     }
 
     public void releaseLock(VaultKey key) {
-        vaultLocks.remove(key);
+        vaultLocks.release(key);
     }
 
 
@@ -410,8 +1108,11 @@ public abstract class DataSource {
         return "DataSource{" +
                 "singleThread=" + singleThread +
                 ", hikari=" + hikari +
+                ", readHikari=" + readHikari +
                 ", cacheTask=" + cacheTask +
+                ", statementCatalog=" + statementCatalog +
                 ", cachedObjects=" + cachedObjects +
+                ", vaultSaveQueue=" + vaultSaveQueue +
                 '}';
     }
 
@@ -420,20 +1121,37 @@ public abstract class DataSource {
         createInstance(config.storage());
     }
 
+    /**
+     * Creates and sets up a new data source. Blocks until the tables exist and any key migration
+     * has finished, so nothing reads from or writes to tables which are still being copied.
+     */
     public static void createInstance(Config.Storage config) throws IllegalStateException {
         TriState closed = instance != null ? instance.isClosed() : TriState.TRUE;
         if (closed != TriState.TRUE) {
             throw new IllegalStateException(closed == TriState.ALTERNATIVE_STATE ? "DataSource is not properly closed." : "DataSource is not closed.");
         }
 
-        instance = config.driver().supply(config); // Set a new instance
-        instance.setup().whenComplete((unused, throwable) -> {
-            for (Player player : Bukkit.getOnlinePlayers()) {
-                instance.cacheObject(instance.getMaltsPlayer(player.getUniqueId()));
-                instance.cacheObject(instance.getWarehouse(player.getUniqueId()));
-            }
-        }).exceptionally(ex -> {
-            throw new IllegalStateException("An exception/error occurred while setting up the DataSource", ex);
-        });
+        DataSource dataSource = config.driver().supply(config);
+        try {
+            dataSource.setup().join();
+        } catch (CompletionException ex) {
+            throw new IllegalStateException("An exception/error occurred while setting up the DataSource", ex.getCause());
+        }
+
+        instance = dataSource; // Set a new instance once it can be used
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            instance.cacheObject(instance.getMaltsPlayer(player.getUniqueId()));
+            instance.cacheObject(instance.getWarehouse(player.getUniqueId()));
+        }
+    }
+
+    /**
+     * Identifies a load for {@link SingleFlight}.
+     *
+     * @param type what is being loaded
+     * @param key the key it's loaded by
+     * @param variant anything else which changes the result, e.g. whether a missing vault is created
+     */
+    private record LoadKey(Class<?> type, Object key, @Nullable Object variant) {
     }
 }
@@ -0,0 +1,266 @@
+package dev.jsinco.malts.storage;
+
+import dev.jsinco.malts.obj.VaultKey;
+import dev.jsinco.malts.utility.Text;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Finds items across every player's vaults and warehouses, e.g. to track down duplicated
+ * items or a banned material. Vaults and warehouses are read from storage a page at a time,
+ * so only one page is ever held in memory, and the search gives up once its time budget is spent.
+ * <p>
+ * Reads what storage holds: vault saves which are still queued are flushed first, but changes
+ * to vaults players currently have open aren't seen until those vaults are saved.
+ *
+ * @see DataSource#locateItems(Filter, Consumer)
+ */
+public final class ItemLocator {
+
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final DataSource dataSource;
+    private final Filter filter;
+    private final int pageSize;
+    private final long budgetNanos;
+    private final Consumer<Progress> progressListener;
+
+    private long vaultsScanned;
+    private long warehousesScanned;
+    private long failed;
+    private final List<Match> matches = new ArrayList<>();
+
+    /**
+     * @param dataSource the data source to search
+     * @param filter what to look for
+     * @param pageSize how many vaults or warehouses to read at a time
+     * @param budgetMillis how long to search for before giving up
+     * @param progressListener told how far along the search is every few seconds
+     */
+    public ItemLocator(DataSource dataSource, Filter filter, int pageSize, long budgetMillis, Consumer<Progress> progressListener) {
+        this.dataSource = dataSource;
+        this.filter = filter;
+        this.pageSize = Math.max(1, pageSize);
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, budgetMillis));
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Runs the search on the calling thread, which should never be the main thread.
+     *
+     * @return everything found before the search finished or ran out of time
+     */
+    public Result run() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + budgetNanos;
+        long nextProgress = start + PROGRESS_INTERVAL_NANOS;
+        long totalVaults;
+        try (Connection connection = dataSource.readConnection();
+             PreparedStatement statement = connection.prepareStatement(dataSource.getStatement("vaults/total_vault_count.sql"));
+             ResultSet rs = statement.executeQuery()) {
+            totalVaults = rs.next() ? rs.getLong(1) : 0;
+        }
+
+        boolean timedOut = false;
+        VaultKeyCursor vaultCursor = new VaultKeyCursor();
+        while (!vaultCursor.done) {
+            if (System.nanoTime() - deadline > 0) {
+                timedOut = true;
+                break;
+            }
+            this.scanVaultPage(vaultCursor);
+            if (System.nanoTime() - nextProgress > 0) {
+                nextProgress = System.nanoTime() + PROGRESS_INTERVAL_NANOS;
+                progressListener.accept(new Progress(vaultsScanned, totalVaults, warehousesScanned, matches.size(), elapsedMillis(start)));
+            }
+        }
+
+        // Warehouses only hold plain materials, a name or lore can't match them
+        if (!timedOut && filter.material() != null && filter.name() == null && filter.lore() == null) {
+            UUID after = null;
+            boolean done = false;
+            while (!done) {
+                if (System.nanoTime() - deadline > 0) {
+                    timedOut = true;
+                    break;
+                }
+                UUID last = this.scanWarehousePage(filter.material(), after);
+                done = last == null;
+                after = last;
+            }
+        }
+
+        Result result = new Result(List.copyOf(matches), vaultsScanned, totalVaults, warehousesScanned, failed, timedOut, elapsedMillis(start));
+        Text.debug("Located items: " + result.matches().size() + " match(es) in " + vaultsScanned + " vault(s) and "
+                + warehousesScanned + " warehouse(s) in " + result.elapsedMillis() + "ms" + (timedOut ? ", ran out of time" : ""));
+        return result;
+    }
+
+    private void scanVaultPage(VaultKeyCursor cursor) throws SQLException {
+        List<VaultRow> rows;
+        try (Connection connection = dataSource.readConnection()) {
+            rows = VaultRow.readPage(dataSource, connection, cursor.after, pageSize, true);
+        }
+
+        // Decoded after giving the connection back
+        for (VaultRow row : rows) {
+            try {
+                ItemStack[] stored = row.decodeStored();
+                if (stored == null) {
+                    continue;
+                }
+                for (Map.Entry<Integer, ItemStack> slot : row.withDeltas(stored).entrySet()) {
+                    ItemStack item = slot.getValue();
+                    if (item != null && !item.isEmpty() && filter.matches(item)) {
+                        matches.add(new Match(row.owner(), Match.Kind.VAULT, row.id(), slot.getKey(),
+                                item.getType(), item.getAmount(), plainText(item.effectiveName())));
+                    }
+                }
+            } catch (Exception ex) {
+                failed++;
+                Text.warn("Could not read vault " + row.id() + " of " + row.owner() + " while locating items: " + ex.getMessage());
+            }
+        }
+
+        vaultsScanned += rows.size();
+        cursor.done = rows.size() < pageSize;
+        if (!rows.isEmpty()) {
+            cursor.after = rows.getLast().key();
+        }
+    }
+
+    /**
+     * @return the last owner of the page, or null if it was the last page
+     */
+    @Nullable
+    private UUID scanWarehousePage(Material material, @Nullable UUID after) throws SQLException {
+        int read = 0;
+        UUID last = null;
+        try (Connection connection = dataSource.readConnection();
+             PreparedStatement statement = connection.prepareStatement(dataSource.getStatement(after == null
+                     ? "warehouses/select_first_warehouse_material_page.sql"
+                     : "warehouses/select_warehouse_material_page.sql"))) {
+            dataSource.getKeySchema().setMaterial(statement, 1, material);
+            if (after == null) {
+                statement.setInt(2, pageSize);
+            } else {
+                dataSource.setUuid(statement, 2, after);
+                statement.setInt(3, pageSize);
+            }
+
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    last = dataSource.getUuid(rs, "owner");
+                    matches.add(new Match(last, Match.Kind.WAREHOUSE, -1, -1, material, rs.getInt("quantity"), null));
+                    read++;
+                }
+            }
+        }
+        warehousesScanned += read;
+        return read < pageSize ? null : last;
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static String plainText(Component component) {
+        return PlainTextComponentSerializer.plainText().serialize(component);
+    }
+
+    private static final class VaultKeyCursor {
+        @Nullable
+        private VaultKey after;
+        private boolean done;
+    }
+
+    /**
+     * What to look for. Every criteria which is set has to match.
+     *
+     * @param material the exact material of the item
+     * @param name found anywhere in the plain name of the item
+     * @param lore found anywhere in any plain line of the item's lore
+     */
+    public record Filter(@Nullable Material material, @Nullable Pattern name, @Nullable Pattern lore) {
+
+        public boolean isEmpty() {
+            return material == null && name == null && lore == null;
+        }
+
+        public boolean matches(ItemStack item) {
+            if (material != null && item.getType() != material) {
+                return false;
+            }
+            if (name != null && !name.matcher(plainText(item.effectiveName())).find()) {
+                return false;
+            }
+            if (lore != null) {
+                // getItemMeta() copies the meta, only read when needed
+                ItemMeta meta = item.hasItemMeta() ? item.getItemMeta() : null;
+                List<Component> lines = meta != null && meta.hasLore() ? meta.lore() : null;
+                if (lines == null) {
+                    return false;
+                }
+                return lines.stream().anyMatch(line -> lore.matcher(plainText(line)).find());
+            }
+            return true;
+        }
+    }
+
+    /**
+     * An item which was found.
+     *
+     * @param owner the owner of the vault or warehouse
+     * @param kind where the item was found
+     * @param vaultId the id of the vault, -1 for warehouses
+     * @param slot the slot in the vault, -1 for warehouses
+     * @param material the item's material
+     * @param amount how many of the item there are
+     * @param itemName the item's plain name, null for warehouses
+     */
+    public record Match(UUID owner, Kind kind, int vaultId, int slot, Material material, int amount, @Nullable String itemName) {
+        public enum Kind {
+            VAULT,
+            WAREHOUSE
+        }
+    }
+
+    /**
+     * @param vaultsScanned how many vaults were searched so far
+     * @param totalVaults how many vaults were stored when the search started
+     * @param warehousesScanned how many warehouses holding the material were found so far
+     * @param matches how many items were found so far
+     * @param elapsedMillis how long the search has been running
+     */
+    public record Progress(long vaultsScanned, long totalVaults, long warehousesScanned, int matches, long elapsedMillis) {
+    }
+
+    /**
+     * @param matches every item found, vaults first, ordered by owner
+     * @param vaultsScanned how many vaults were searched
+     * @param totalVaults how many vaults were stored when the search started
+     * @param warehousesScanned how many warehouses holding the material were found
+     * @param failed how many vaults couldn't be read
+     * @param timedOut whether the search ran out of time before searching everything
+     * @param elapsedMillis how long the search took
+     */
+    public record Result(List<Match> matches, long vaultsScanned, long totalVaults, long warehousesScanned, long failed,
+                         boolean timedOut, long elapsedMillis) {
+    }
+}
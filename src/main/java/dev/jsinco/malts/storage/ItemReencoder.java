@@ -0,0 +1,441 @@
+package dev.jsinco.malts.storage;
+
+import dev.jsinco.malts.obj.Vault;
+import dev.jsinco.malts.obj.VaultContentScanner;
+import dev.jsinco.malts.obj.VaultKey;
+import dev.jsinco.malts.utility.Executors;
+import dev.jsinco.malts.utility.Text;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Walks every stored vault in the background to do work which would otherwise be paid
+ * for when players open or search their vaults:
+ * <ul>
+ *     <li>After a Minecraft update, re-encodes each vault at the server's current data version,
+ *     so Paper doesn't have to upgrade old items the first time each vault is opened.</li>
+ *     <li>Builds the vault content index for vaults saved before the index existed.</li>
+ * </ul>
+ * Vaults are walked in pages ordered by key, one page per batch with a pause in between.
+ * Each page is read and decoded on the async scheduler, only its writes go through the
+ * write executor, so SQLite's single writer isn't held up by decoding.
+ * The last vault of each batch is stored in {@code malts_meta} together with the batch's writes,
+ * so a restart resumes where the previous run stopped. Once every vault is done the data version
+ * and index version are stored and nothing runs again until one of them changes.
+ * <p>
+ * A vault's payload and each of its slot deltas are only re-encoded if they are still what was read, and it's only indexed
+ * if it wasn't saved since it was read, so a player saving the vault in the meantime always wins.
+ */
+public final class ItemReencoder {
+
+    private static final String DATA_VERSION_KEY = "items_data_version";
+    private static final String INDEX_VERSION_KEY = "vault_index_version";
+    private static final String CURSOR_KEY = "items_reencode_cursor";
+    // Bump to rebuild the index, e.g. when VaultContentScanner#searchableText changes
+    private static final String INDEX_VERSION = "1";
+
+    private final DataSource dataSource;
+    private final Executor writeExecutor;
+    private final String upsertMetaPath;
+    private final boolean reencodeItems;
+    private final int batchSize;
+    private final long batchDelayMillis;
+    private final int dataVersion = Bukkit.getUnsafe().getDataVersion();
+
+    private volatile boolean running;
+    @Nullable
+    private volatile ScheduledTask nextBatch;
+    private boolean reencoding;
+    private boolean indexing;
+    private String pass;
+    @Nullable
+    private Cursor cursor;
+    private long total;
+    private long processed;
+    private long rewritten;
+    private long indexed;
+    private long failed;
+
+    /**
+     * @param dataSource the data source the vaults are stored in
+     * @param writeExecutor the executor writes to the data source run on
+     * @param dialect the dialect of the data source
+     * @param reencodeItems whether to re-encode vaults after a Minecraft update, the index is always built
+     * @param batchSize how many vaults to go through per batch
+     * @param batchDelayMillis how long to pause between batches
+     */
+    public ItemReencoder(DataSource dataSource, Executor writeExecutor, String dialect, boolean reencodeItems, int batchSize, long batchDelayMillis) {
+        this.dataSource = dataSource;
+        this.writeExecutor = writeExecutor;
+        this.upsertMetaPath = "meta/" + dialect + "/insert_or_update_meta.sql";
+        this.reencodeItems = reencodeItems;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchDelayMillis = Math.max(0, batchDelayMillis);
+    }
+
+    /**
+     * Starts going through every vault in the background if stored vaults were written under
+     * an older data version or aren't indexed yet, resuming from the last finished batch.
+     */
+    public void start() {
+        Executors.supplyAsyncWithSQLException(() -> {
+            try (Connection connection = dataSource.readConnection()) {
+                this.reencoding = reencodeItems && !String.valueOf(dataVersion).equals(this.readMeta(connection, DATA_VERSION_KEY));
+                this.indexing = !INDEX_VERSION.equals(this.readMeta(connection, INDEX_VERSION_KEY));
+                if (!reencoding && !indexing) {
+                    Text.debug("Stored vaults are already at data version " + dataVersion + " and indexed");
+                    return null;
+                }
+
+                // A cursor left by a pass doing something else means starting over
+                this.pass = (reencoding ? String.valueOf(dataVersion) : "-") + "/" + (indexing ? INDEX_VERSION : "-");
+                this.cursor = Cursor.parse(this.readMeta(connection, CURSOR_KEY), pass);
+                try (PreparedStatement statement = connection.prepareStatement(dataSource.getStatement("vaults/total_vault_count.sql"));
+                     ResultSet rs = statement.executeQuery()) {
+                    this.total = rs.next() ? rs.getLong(1) : 0;
+                }
+            }
+
+            if (indexing) {
+                dataSource.setVaultIndexComplete(false);
+            }
+            running = true;
+            Text.log("Going through " + total + " vault(s) in the background to " +
+                    (reencoding ? "re-encode them at data version " + dataVersion + (indexing ? " and " : "") : "") +
+                    (indexing ? "build the content index" : "") +
+                    (cursor != null ? ", resuming where the last run stopped" : ""));
+            this.scheduleNextBatch(0);
+            return null;
+        });
+    }
+
+    public void stop() {
+        running = false;
+        ScheduledTask task = nextBatch;
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void scheduleNextBatch(long delayMillis) {
+        if (!running) {
+            return;
+        }
+        // Runs on the async scheduler, only the writes go through the write executor
+        nextBatch = Executors.runDelayedAsync(Math.max(1, delayMillis), TimeUnit.MILLISECONDS, task -> {
+            if (running) {
+                this.runBatch();
+            }
+        });
+    }
+
+    private void runBatch() {
+        Batch batch;
+        try {
+            batch = this.readBatch();
+        } catch (Exception ex) {
+            Text.error("Failed to read a batch of vaults, retrying after the next pause", ex);
+            this.scheduleNextBatch(batchDelayMillis);
+            return;
+        }
+
+        CompletableFuture<Boolean> written;
+        try {
+            written = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return this.writeBatch(batch);
+                } catch (SQLException ex) {
+                    throw new CompletionException(ex);
+                }
+            }, writeExecutor);
+        } catch (RejectedExecutionException ex) {
+            // The database is busy, nothing was written so the same page is tried again
+            this.scheduleNextBatch(batchDelayMillis);
+            return;
+        }
+        written.whenComplete((finished, throwable) -> {
+            if (throwable != null) {
+                // Nothing was committed, the same page is tried again next batch
+                Text.error("Failed to go through a batch of vaults, retrying after the next pause", throwable);
+            } else if (finished) {
+                return;
+            }
+            Text.debug("Going through vaults: " + this);
+            this.scheduleNextBatch(batchDelayMillis);
+        });
+    }
+
+    /**
+     * Reads the next page and works out what to write for it. Upgrading old items is the slow part,
+     * so this never runs on the write executor.
+     */
+    private Batch readBatch() throws SQLException {
+        long readAt = dataSource.getVaultWriteSequence();
+        List<VaultRow> rows = this.readPage();
+
+        Map<VaultRow, byte[]> reencoded = new LinkedHashMap<>();
+        List<SlotUpdate> reencodedSlots = new ArrayList<>();
+        Map<VaultRow, Map<Integer, String>> searchableText = new LinkedHashMap<>();
+        for (VaultRow row : rows) {
+            ItemStack[] items = this.decode(row);
+            if (items == null) {
+                continue;
+            }
+            if (reencoding && row.data() != null) {
+                byte[] data = Vault.encodeInventoryData(items);
+                if (!Arrays.equals(data, row.data())) {
+                    reencoded.put(row, data);
+                }
+                this.reencodeSlots(row, reencodedSlots);
+            }
+            if (indexing) {
+                try {
+                    searchableText.put(row, searchableText(row, items));
+                } catch (Exception ex) {
+                    failed++;
+                    Text.warn("Could not index vault " + row.id() + " of " + row.owner() + ": " + ex.getMessage());
+                }
+            }
+        }
+        return new Batch(rows, reencoded, reencodedSlots, searchableText, readAt);
+    }
+
+    /**
+     * Slot deltas are applied on top of the payload when a vault is loaded,
+     * so they are brought to the current data version too.
+     */
+    private void reencodeSlots(VaultRow row, List<SlotUpdate> updates) {
+        for (Map.Entry<Integer, byte[]> delta : row.deltas().entrySet()) {
+            byte[] stored = delta.getValue();
+            if (stored == null) {
+                continue; // Cleared slot
+            }
+            try {
+                byte[] data = Vault.encodeSlot(Vault.decodeSlot(stored));
+                if (data != null && !Arrays.equals(data, stored)) {
+                    updates.add(new SlotUpdate(row, delta.getKey(), data, stored));
+                }
+            } catch (Exception ex) {
+                failed++;
+                Text.warn("Could not decode slot " + delta.getKey() + " of vault " + row.id() + " of " + row.owner() + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @param batch what was read and worked out for the page
+     * @return true if this was the last batch
+     */
+    private boolean writeBatch(Batch batch) throws SQLException {
+        List<VaultRow> rows = batch.rows();
+        Map<VaultRow, byte[]> reencoded = batch.reencoded();
+        Map<VaultRow, Map<Integer, String>> searchableText = batch.searchableText();
+        long readAt = batch.readAt();
+        try (Connection connection = dataSource.connection()) {
+            int batchRewritten = 0;
+            int batchIndexed = 0;
+            connection.setAutoCommit(false);
+            try (PreparedStatement update = connection.prepareStatement(dataSource.getStatement("vaults/update_vault_data.sql"));
+                 PreparedStatement updateSlot = connection.prepareStatement(dataSource.getStatement("vaults/update_vault_slot_data.sql"));
+                 PreparedStatement clearIndex = connection.prepareStatement(dataSource.getStatement("index/delete_vault_index.sql"));
+                 PreparedStatement insertIndex = connection.prepareStatement(dataSource.getStatement("index/insert_vault_index.sql"))) {
+
+                for (Map.Entry<VaultRow, byte[]> entry : reencoded.entrySet()) {
+                    VaultRow row = entry.getKey();
+                    update.setBytes(1, entry.getValue());
+                    dataSource.setUuid(update, 2, row.owner());
+                    update.setInt(3, row.id());
+                    update.setBytes(4, row.data());
+                    update.addBatch();
+                }
+                if (!reencoded.isEmpty()) {
+                    for (int updated : update.executeBatch()) {
+                        // 0 when the vault was saved since it was read
+                        if (updated != 0) {
+                            batchRewritten++;
+                        }
+                    }
+                }
+
+                for (SlotUpdate slot : batch.reencodedSlots()) {
+                    updateSlot.setBytes(1, slot.data());
+                    dataSource.setUuid(updateSlot, 2, slot.row().owner());
+                    updateSlot.setInt(3, slot.row().id());
+                    updateSlot.setInt(4, slot.slot());
+                    updateSlot.setBytes(5, slot.stored());
+                    updateSlot.addBatch();
+                }
+                if (!batch.reencodedSlots().isEmpty()) {
+                    // Rows saved since they were read don't match and are left alone
+                    updateSlot.executeBatch();
+                }
+
+                int inserts = 0;
+                for (Map.Entry<VaultRow, Map<Integer, String>> entry : searchableText.entrySet()) {
+                    VaultRow row = entry.getKey();
+                    // Saved since it was read, that save already indexed the whole vault
+                    if (dataSource.wasVaultWrittenSince(row.key(), readAt)) {
+                        continue;
+                    }
+                    dataSource.setUuid(clearIndex, 1, row.owner());
+                    clearIndex.setInt(2, row.id());
+                    clearIndex.addBatch();
+                    for (Map.Entry<Integer, String> slot : entry.getValue().entrySet()) {
+                        dataSource.setUuid(insertIndex, 1, row.owner());
+                        insertIndex.setInt(2, row.id());
+                        insertIndex.setInt(3, slot.getKey());
+                        insertIndex.setString(4, slot.getValue());
+                        insertIndex.addBatch();
+                        inserts++;
+                    }
+                    batchIndexed++;
+                }
+                if (batchIndexed > 0) {
+                    clearIndex.executeBatch();
+                }
+                if (inserts > 0) {
+                    insertIndex.executeBatch();
+                }
+
+                boolean finished = rows.size() < batchSize;
+                Cursor next = rows.isEmpty() ? cursor : new Cursor(pass, rows.getLast().owner(), rows.getLast().id());
+                this.writeMeta(connection, CURSOR_KEY, finished ? "" : next.toString());
+                if (finished && reencoding) {
+                    this.writeMeta(connection, DATA_VERSION_KEY, String.valueOf(dataVersion));
+                }
+                if (finished && indexing) {
+                    this.writeMeta(connection, INDEX_VERSION_KEY, INDEX_VERSION);
+                }
+                connection.commit();
+
+                this.cursor = next;
+                this.processed += rows.size();
+                this.rewritten += batchRewritten;
+                this.indexed += batchIndexed;
+                if (finished) {
+                    running = false;
+                    if (indexing) {
+                        dataSource.setVaultIndexComplete(true);
+                    }
+                    Text.log("Finished going through every vault: " + this);
+                }
+                return finished;
+            } catch (SQLException ex) {
+                connection.rollback();
+                throw ex;
+            }
+        }
+    }
+
+    private List<VaultRow> readPage() throws SQLException {
+        try (Connection connection = dataSource.readConnection()) {
+            // The index has to match what a player sees, which includes slot deltas, and deltas are re-encoded too
+            return VaultRow.readPage(dataSource, connection, cursor != null ? VaultKey.of(cursor.owner(), cursor.id()) : null, batchSize, true);
+        }
+    }
+
+    @Nullable
+    private ItemStack[] decode(VaultRow row) {
+        try {
+            return row.decodeStored();
+        } catch (Exception ex) {
+            // Left as is, Paper gets another go at it when the vault is opened
+            failed++;
+            Text.warn("Could not decode vault " + row.id() + " of " + row.owner() + ": " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private static Map<Integer, String> searchableText(VaultRow row, ItemStack[] items) {
+        Map<Integer, String> text = new HashMap<>();
+        row.withDeltas(items).forEach((slot, item) -> {
+            if (item != null && !item.isEmpty()) {
+                text.put(slot, VaultContentScanner.searchableText(item));
+            }
+        });
+        return text;
+    }
+
+    @Nullable
+    private String readMeta(Connection connection, String name) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(dataSource.getStatement("meta/select_meta.sql"))) {
+            statement.setString(1, name);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getString("value") : null;
+            }
+        }
+    }
+
+    private void writeMeta(Connection connection, String name, String value) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(dataSource.getStatement(upsertMetaPath))) {
+            statement.setString(1, name);
+            statement.setString(2, value);
+            statement.executeUpdate();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ItemReencoder{" +
+                "dataVersion=" + dataVersion +
+                ", running=" + running +
+                ", processed=" + processed + "/" + total +
+                ", rewritten=" + rewritten +
+                ", indexed=" + indexed +
+                ", failed=" + failed +
+                '}';
+    }
+
+    private record Batch(List<VaultRow> rows, Map<VaultRow, byte[]> reencoded, List<SlotUpdate> reencodedSlots,
+                         Map<VaultRow, Map<Integer, String>> searchableText, long readAt) {
+    }
+
+    private record SlotUpdate(VaultRow row, int slot, byte[] data, byte[] stored) {
+    }
+
+    /**
+     * The last vault gone through by a pass.
+     */
+    private record Cursor(String pass, UUID owner, int id) {
+
+        @Nullable
+        static Cursor parse(@Nullable String value, String pass) {
+            if (value == null || value.isEmpty()) {
+                return null;
+            }
+            String[] parts = value.split("\\|");
+            if (parts.length != 3 || !parts[0].equals(pass)) {
+                return null;
+            }
+            return new Cursor(pass, UUID.fromString(parts[1]), Integer.parseInt(parts[2]));
+        }
+
+        @Override
+        public String toString() {
+            return pass + "|" + owner + "|" + id;
+        }
+    }
+}
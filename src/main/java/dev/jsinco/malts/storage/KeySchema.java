@@ -0,0 +1,276 @@
+package dev.jsinco.malts.storage;
+
+import dev.jsinco.malts.enums.Driver;
+import dev.jsinco.malts.enums.KeyEncoding;
+import dev.jsinco.malts.utility.Text;
+import lombok.Getter;
+import org.bukkit.Material;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Decides how keys are written to and read from the database, and migrates an existing
+ * database from {@link KeyEncoding#TEXT} to {@link KeyEncoding#BINARY} keys.
+ * <p>
+ * Migrating renames every existing table with a {@value #LEGACY_SUFFIX} suffix, creates the
+ * compact tables in their place and copies each row over, converting UUIDs and material names.
+ * A marker in {@code malts_meta} is written once every table has been copied, so a migration
+ * which is interrupted starts over on the next start. The renamed tables are left untouched
+ * and can be dropped once the migration has been verified.
+ * <p>
+ * The migration runs while the data source is set up, which blocks until it has finished,
+ * see {@link DataSource#createInstance(dev.jsinco.malts.configuration.files.Config.Storage)}.
+ */
+public final class KeySchema {
+
+    public static final String LEGACY_SUFFIX = "_text";
+    private static final String ENCODING_KEY = "key_encoding";
+    // In foreign key order
+    private static final List<String> TABLES = List.of("malts_players", "malts_vaults", "malts_vault_slots", "malts_vault_index", "malts_warehouses");
+    private static final int COPY_BATCH_SIZE = 1000;
+
+    @Getter
+    private final KeyEncoding encoding;
+    private final String dialect;
+    private final StatementCatalog statementCatalog;
+    @Getter @Nullable
+    private final MaterialDictionary materials;
+    @Nullable
+    private KeyEncoding storedEncoding;
+    private boolean migrating;
+
+    public KeySchema(KeyEncoding encoding, Driver driver, StatementCatalog statementCatalog) {
+        this.encoding = encoding;
+        this.dialect = driver.getDialect();
+        this.statementCatalog = statementCatalog;
+        this.materials = encoding == KeyEncoding.BINARY ? new MaterialDictionary() : null;
+    }
+
+    /**
+     * @return the file creating every table for this encoding
+     */
+    public String createTablesPath() {
+        return "tables/" + dialect + (encoding == KeyEncoding.BINARY ? "/create_compact_tables.sql" : "/create_tables.sql");
+    }
+
+    /**
+     * Runs before the tables are created. Refuses to start if the database was already
+     * migrated to binary keys but text keys are configured, and moves text tables out
+     * of the way when a migration is needed.
+     */
+    public void prepare(Connection connection) throws SQLException {
+        this.storedEncoding = this.readStoredEncoding(connection);
+
+        if (encoding == KeyEncoding.TEXT) {
+            if (storedEncoding == KeyEncoding.BINARY) {
+                throw new IllegalStateException("This database uses BINARY keys, which cannot be converted back to TEXT. Set 'key-encoding' back to BINARY.");
+            }
+            return;
+        }
+        if (storedEncoding == KeyEncoding.BINARY) {
+            return;
+        }
+
+        for (String table : TABLES) {
+            String legacy = table + LEGACY_SUFFIX;
+            if (tableExists(connection, legacy)) {
+                // Left behind by an interrupted migration
+                migrating = true;
+            } else if (tableExists(connection, table)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("ALTER TABLE " + table + " RENAME TO " + legacy);
+                }
+                migrating = true;
+            }
+        }
+        if (migrating) {
+            Text.log("Migrating the database to BINARY keys, this may take a while on large databases...");
+        }
+    }
+
+    /**
+     * Runs after the tables are created. Loads the material dictionary and copies
+     * rows from the renamed text tables if a migration is in progress.
+     *
+     * @param writer the connection rows are written to
+     * @param reader the connection text rows are read from, may be the same as the writer
+     * @param fetchSize the fetch size used when reading text rows
+     */
+    public void complete(Connection writer, Connection reader, int fetchSize) throws SQLException {
+        if (encoding != KeyEncoding.BINARY) {
+            return;
+        }
+        materials.sync(writer, statementCatalog.get("materials/select_materials.sql"),
+                statementCatalog.get("materials/" + dialect + "/insert_material.sql"));
+
+        if (storedEncoding == KeyEncoding.BINARY) {
+            return;
+        }
+
+        boolean autoCommit = writer.getAutoCommit();
+        writer.setAutoCommit(false);
+        try {
+            if (migrating) {
+                // Anything already here is left over from an interrupted migration
+                for (String table : TABLES.reversed()) {
+                    try (Statement statement = writer.createStatement()) {
+                        statement.executeUpdate("DELETE FROM " + table);
+                    }
+                }
+                for (String table : TABLES) {
+                    if (tableExists(writer, table + LEGACY_SUFFIX)) {
+                        this.copyTable(writer, reader, fetchSize, table);
+                    }
+                }
+            }
+            try (PreparedStatement statement = writer.prepareStatement(statementCatalog.get("meta/insert_meta.sql"))) {
+                statement.setString(1, ENCODING_KEY);
+                statement.setString(2, KeyEncoding.BINARY.name());
+                statement.executeUpdate();
+            }
+            writer.commit();
+        } catch (SQLException ex) {
+            writer.rollback();
+            throw ex;
+        } finally {
+            writer.setAutoCommit(autoCommit);
+        }
+
+        if (migrating) {
+            Text.log("Finished migrating to BINARY keys. The old tables were kept with a '" + LEGACY_SUFFIX + "' suffix and can be dropped.");
+            migrating = false;
+        }
+        storedEncoding = KeyEncoding.BINARY;
+    }
+
+    private void copyTable(Connection writer, Connection reader, int fetchSize, String table) throws SQLException {
+        String legacy = table + LEGACY_SUFFIX;
+        int copied = 0;
+        int skipped = 0;
+
+        try (Statement select = reader.createStatement()) {
+            select.setFetchSize(fetchSize);
+            try (ResultSet rs = select.executeQuery("SELECT * FROM " + legacy)) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                List<String> columns = new ArrayList<>();
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    columns.add(metaData.getColumnName(i).toLowerCase(Locale.ROOT));
+                }
+
+                String insert = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" +
+                        String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+                try (PreparedStatement statement = writer.prepareStatement(insert)) {
+                    while (rs.next()) {
+                        if (!this.copyRow(rs, statement, columns)) {
+                            skipped++;
+                            continue;
+                        }
+                        statement.addBatch();
+                        if (++copied % COPY_BATCH_SIZE == 0) {
+                            statement.executeBatch();
+                        }
+                    }
+                    statement.executeBatch();
+                }
+            }
+        }
+        writer.commit();
+
+        Text.log("Copied " + copied + " rows from " + legacy + " to " + table);
+        if (skipped > 0) {
+            Text.warn("Skipped " + skipped + " rows from " + legacy + " with an invalid UUID or a material that no longer exists");
+        }
+    }
+
+    private boolean copyRow(ResultSet rs, PreparedStatement statement, List<String> columns) throws SQLException {
+        for (int i = 0; i < columns.size(); i++) {
+            int index = i + 1;
+            switch (columns.get(i)) {
+                case "owner", "uuid" -> {
+                    UUID uuid;
+                    try {
+                        uuid = UUID.fromString(rs.getString(index));
+                    } catch (IllegalArgumentException | NullPointerException e) {
+                        return false;
+                    }
+                    statement.setBytes(index, KeyEncoding.toBytes(uuid));
+                }
+                case "material" -> {
+                    Material material = Material.matchMaterial(rs.getString(index));
+                    if (material == null) {
+                        return false;
+                    }
+                    statement.setInt(index, materials.id(material));
+                }
+                default -> statement.setObject(index, rs.getObject(index));
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private KeyEncoding readStoredEncoding(Connection connection) throws SQLException {
+        if (!tableExists(connection, "malts_meta")) {
+            return null;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(statementCatalog.get("meta/select_meta.sql"))) {
+            statement.setString(1, ENCODING_KEY);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? KeyEncoding.valueOf(rs.getString("value")) : null;
+            }
+        }
+    }
+
+    private static boolean tableExists(Connection connection, String table) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        // The name is a LIKE pattern, where the underscores in our table names match any character
+        String escape = metaData.getSearchStringEscape();
+        String pattern = escape == null || escape.isEmpty() ? table : table.replace(escape, escape + escape)
+                .replace("_", escape + "_")
+                .replace("%", escape + "%");
+        try (ResultSet rs = metaData.getTables(connection.getCatalog(), null, pattern, new String[]{"TABLE"})) {
+            while (rs.next()) {
+                if (table.equalsIgnoreCase(rs.getString("TABLE_NAME"))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    public void setUuid(PreparedStatement statement, int index, UUID uuid) throws SQLException {
+        encoding.setUuid(statement, index, uuid);
+    }
+
+    public UUID getUuid(ResultSet rs, String column) throws SQLException {
+        return encoding.getUuid(rs, column);
+    }
+
+    public void setMaterial(PreparedStatement statement, int index, Material material) throws SQLException {
+        if (materials != null) {
+            statement.setInt(index, materials.id(material));
+        } else {
+            statement.setString(index, material.name());
+        }
+    }
+
+    @Nullable
+    public Material getMaterial(ResultSet rs, String column) throws SQLException {
+        if (materials != null) {
+            return materials.material(rs.getInt(column));
+        }
+        return Material.matchMaterial(rs.getString(column));
+    }
+}
@@ -0,0 +1,100 @@
+package dev.jsinco.malts.storage;
+
+import dev.jsinco.malts.utility.Text;
+import org.bukkit.Material;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In memory copy of the {@code malts_materials} table, which gives every material a small
+ * integer id when {@link dev.jsinco.malts.enums.KeyEncoding#BINARY} keys are used.
+ * <p>
+ * Every material known to the server is inserted once on startup, so lookups afterward
+ * never touch the database. Ids are assigned by the database, which keeps them stable
+ * when several servers share one MySQL database.
+ */
+public final class MaterialDictionary {
+
+    private volatile Map<Material, Integer> ids = new EnumMap<>(Material.class);
+    private volatile Material[] materials = new Material[0];
+
+    /**
+     * Inserts any materials missing from the table and reloads it.
+     *
+     * @param connection the connection to use
+     * @param selectStatement the statement selecting every id and name
+     * @param insertStatement the statement inserting a name, ignoring existing ones
+     */
+    @SuppressWarnings("deprecation")
+    public void sync(Connection connection, String selectStatement, String insertStatement) throws SQLException {
+        this.load(connection, selectStatement);
+
+        List<Material> missing = new ArrayList<>();
+        for (Material material : Material.values()) {
+            if (!material.isLegacy() && !ids.containsKey(material)) {
+                missing.add(material);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(insertStatement)) {
+            for (Material material : missing) {
+                statement.setString(1, material.name());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        this.load(connection, selectStatement);
+        Text.debug("Added " + missing.size() + " materials to the material dictionary");
+    }
+
+    private void load(Connection connection, String selectStatement) throws SQLException {
+        Map<Material, Integer> ids = new EnumMap<>(Material.class);
+        int maxId = 0;
+        try (PreparedStatement statement = connection.prepareStatement(selectStatement);
+             ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                // Names of materials removed from the game stay in the table, they just never resolve
+                Material material = Material.getMaterial(rs.getString("name"));
+                if (material != null) {
+                    int id = rs.getInt("id");
+                    ids.put(material, id);
+                    maxId = Math.max(maxId, id);
+                }
+            }
+        }
+
+        Material[] materials = new Material[maxId + 1];
+        ids.forEach((material, id) -> materials[id] = material);
+        this.materials = materials;
+        this.ids = ids;
+    }
+
+    public int id(Material material) {
+        Integer id = ids.get(material);
+        if (id == null) {
+            throw new IllegalStateException("Material " + material + " is not in the material dictionary");
+        }
+        return id;
+    }
+
+    @Nullable
+    public Material material(int id) {
+        Material[] materials = this.materials;
+        return id >= 0 && id < materials.length ? materials[id] : null;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
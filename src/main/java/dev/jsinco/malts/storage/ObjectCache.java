@@ -0,0 +1,113 @@
+package dev.jsinco.malts.storage;
+
+import com.google.common.base.Preconditions;
+import dev.jsinco.malts.obj.CachedObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Holds every {@link CachedObject} of a {@link DataSource}, keyed by the object's
+ * concrete class and then by its UUID. Lookups, insertions and removals are constant time
+ * no matter how many objects are cached.
+ *
+ * @see DataSource#cachedObject(UUID, Class)
+ */
+public final class ObjectCache {
+
+    private final Map<Class<? extends CachedObject>, ConcurrentHashMap<UUID, CachedObject>> buckets = new ConcurrentHashMap<>();
+
+    @Nullable
+    public <T extends CachedObject> T get(@NotNull UUID uuid, @NotNull Class<T> type) {
+        Preconditions.checkNotNull(uuid, "uuid cannot be null");
+        Preconditions.checkNotNull(type, "type cannot be null");
+
+        ConcurrentHashMap<UUID, CachedObject> bucket = buckets.get(type);
+        if (bucket == null) {
+            return null;
+        }
+        return type.cast(bucket.get(uuid));
+    }
+
+    /**
+     * Caches an object unless an object of the same type and UUID is already cached.
+     *
+     * @param object the object to cache
+     * @return the object that ended up cached, either the given object or the one that was already present
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public <T extends CachedObject> T putIfAbsent(@NotNull T object) {
+        Preconditions.checkNotNull(object, "object cannot be null");
+
+        CachedObject existing = bucket(object.getClass()).putIfAbsent(object.getUuid(), object);
+        return existing != null ? (T) existing : object;
+    }
+
+    /**
+     * Removes the given instance from the cache. Does nothing if a different
+     * instance is cached under the same type and UUID.
+     *
+     * @param object the object to remove
+     * @return true if the object was removed
+     */
+    public boolean remove(@NotNull CachedObject object) {
+        ConcurrentHashMap<UUID, CachedObject> bucket = buckets.get(object.getClass());
+        return bucket != null && bucket.remove(object.getUuid(), object);
+    }
+
+    @Nullable
+    public <T extends CachedObject> T remove(@NotNull UUID uuid, @NotNull Class<T> type) {
+        ConcurrentHashMap<UUID, CachedObject> bucket = buckets.get(type);
+        if (bucket == null) {
+            return null;
+        }
+        return type.cast(bucket.remove(uuid));
+    }
+
+    public void forEach(Consumer<CachedObject> consumer) {
+        for (ConcurrentHashMap<UUID, CachedObject> bucket : buckets.values()) {
+            bucket.values().forEach(consumer);
+        }
+    }
+
+    public List<CachedObject> values() {
+        List<CachedObject> values = new ArrayList<>(size());
+        forEach(values::add);
+        return values;
+    }
+
+    public int size() {
+        int size = 0;
+        for (ConcurrentHashMap<UUID, CachedObject> bucket : buckets.values()) {
+            size += bucket.size();
+        }
+        return size;
+    }
+
+    public void clear() {
+        buckets.clear();
+    }
+
+    private ConcurrentHashMap<UUID, CachedObject> bucket(Class<? extends CachedObject> type) {
+        return buckets.computeIfAbsent(type, k -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Only counts the objects of each type, printing every cached object
+     * would grow with the number of players online.
+     */
+    @Override
+    public String toString() {
+        StringJoiner counts = new StringJoiner(", ", "ObjectCache{", "}");
+        buckets.forEach((type, bucket) -> counts.add(type.getSimpleName() + "=" + bucket.size()));
+        return counts.toString();
+    }
+}
@@ -0,0 +1,111 @@
+package dev.jsinco.malts.storage;
+
+import dev.jsinco.malts.obj.VaultSlot;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the matches of each sender's last vault search for a short while, so paging
+ * through the results only has to load the vaults shown on the next page.
+ * <p>
+ * Sessions of a player are dropped whenever one of their vaults is saved or deleted, since
+ * any of them may have gained or lost matches. A search which was still running when that
+ * happened isn't remembered either.
+ */
+public final class SearchSessions {
+
+    private final long ttlNanos;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    // When the vaults of each player were last changed, kept for as long as a session lives
+    private final Map<UUID, Long> invalidatedAt = new ConcurrentHashMap<>();
+
+    public SearchSessions(long ttl, TimeUnit unit) {
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    /**
+     * @return a value to pass to {@link #put(String, UUID, String, List, long)} once the search is done
+     */
+    public long startSearch() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Gets the matches of a sender's last search if it was for the same player and query.
+     *
+     * @param sender who searched
+     * @param owner the player whose vaults were searched
+     * @param query the text searched for
+     * @return the matches in order, or null if the search has to run again
+     */
+    @Nullable
+    public List<VaultSlot> get(String sender, UUID owner, String query) {
+        Session session = sessions.get(sender);
+        if (session == null || !session.owner().equals(owner) || !session.query().equals(query)) {
+            return null;
+        }
+        if (System.nanoTime() - session.expiresAt() > 0) {
+            sessions.remove(sender, session);
+            return null;
+        }
+        return session.matches();
+    }
+
+    /**
+     * Remembers a sender's search, replacing their previous one.
+     *
+     * @param sender who searched
+     * @param owner the player whose vaults were searched
+     * @param query the text searched for
+     * @param matches the matches in order
+     * @param startedAt the value of {@link #startSearch()} from before the search ran
+     */
+    public void put(String sender, UUID owner, String query, List<VaultSlot> matches, long startedAt) {
+        Long invalidated = invalidatedAt.get(owner);
+        if (invalidated != null && invalidated - startedAt >= 0) {
+            return; // A vault changed while searching, the matches may be outdated already
+        }
+        sessions.put(sender, new Session(owner, query, List.copyOf(matches), startedAt + ttlNanos));
+    }
+
+    /**
+     * Drops every session searching a player's vaults.
+     *
+     * @param owner the player whose vaults changed
+     */
+    public void invalidate(UUID owner) {
+        invalidatedAt.put(owner, System.nanoTime());
+        sessions.values().removeIf(session -> session.owner().equals(owner));
+    }
+
+    /**
+     * Drops expired sessions, and changes older than any session could be.
+     */
+    public void expire() {
+        long now = System.nanoTime();
+        sessions.values().removeIf(session -> now - session.expiresAt() > 0);
+        invalidatedAt.values().removeIf(time -> now - time > ttlNanos);
+    }
+
+    public void clear() {
+        sessions.clear();
+        invalidatedAt.clear();
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    @Override
+    public String toString() {
+        return "SearchSessions{sessions=" + sessions.size() + '}';
+    }
+
+    private record Session(UUID owner, String query, List<VaultSlot> matches, long expiresAt) {
+    }
+}
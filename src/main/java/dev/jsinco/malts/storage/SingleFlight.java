@@ -0,0 +1,68 @@
+package dev.jsinco.malts.storage;
+
+import com.google.common.base.Preconditions;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key into one. While a load is in flight,
+ * every other request for the same key waits on it instead of starting its own,
+ * so they all end up with the same object.
+ * <p>
+ * The key is released once the load completes, later requests start a new load.
+ */
+public final class SingleFlight {
+
+    private final ConcurrentHashMap<Object, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * @param key identifies what is being loaded, must implement equals and hashCode
+     * @param loader starts the load, only called if no load for the key is in flight
+     * @return a future completing with the result of the shared load
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> load(@NotNull Object key, @NotNull Supplier<CompletableFuture<T>> loader) {
+        Preconditions.checkNotNull(key, "key cannot be null");
+        Preconditions.checkNotNull(loader, "loader cannot be null");
+
+        CompletableFuture<T> shared = new CompletableFuture<>();
+        CompletableFuture<T> existing = (CompletableFuture<T>) inFlight.putIfAbsent(key, shared);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return existing.copy();
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = loader.get();
+        } catch (Throwable t) {
+            inFlight.remove(key, shared);
+            shared.completeExceptionally(t);
+            return shared.copy();
+        }
+
+        future.whenComplete((value, throwable) -> {
+            inFlight.remove(key, shared);
+            if (throwable != null) {
+                shared.completeExceptionally(throwable);
+            } else {
+                shared.complete(value);
+            }
+        });
+        // Callers get a copy so one of them completing or cancelling it can't affect the others
+        return shared.copy();
+    }
+
+    public int size() {
+        return inFlight.size();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+}
@@ -0,0 +1,58 @@
+package dev.jsinco.malts.storage;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Measures the snapshots taken before a save, which run on the thread owning the
+ * saved object (usually the main thread), while serializing and writing happen elsewhere.
+ */
+public final class SnapshotMetrics {
+
+    private final String name;
+    private final LongAdder snapshots = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public SnapshotMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Takes a snapshot and records how long it took.
+     *
+     * @param snapshot takes the snapshot
+     * @return the snapshot
+     */
+    public <T> T time(Supplier<T> snapshot) {
+        long start = System.nanoTime();
+        try {
+            return snapshot.get();
+        } finally {
+            long took = System.nanoTime() - start;
+            snapshots.increment();
+            totalNanos.add(took);
+            maxNanos.accumulateAndGet(took, Math::max);
+        }
+    }
+
+    public long getSnapshots() {
+        return snapshots.sum();
+    }
+
+    public double getAverageMillis() {
+        long count = snapshots.sum();
+        return count == 0 ? 0 : totalNanos.sum() / (double) count / 1_000_000;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1_000_000D;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{snapshots=%d, avg=%.3fms, max=%.3fms}",
+                name, this.getSnapshots(), this.getAverageMillis(), this.getMaxMillis());
+    }
+}
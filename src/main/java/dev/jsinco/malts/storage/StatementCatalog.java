@@ -0,0 +1,160 @@
+package dev.jsinco.malts.storage;
+
+import com.google.common.base.Preconditions;
+import dev.jsinco.malts.Malts;
+import dev.jsinco.malts.enums.Driver;
+import dev.jsinco.malts.utility.FileUtil;
+import dev.jsinco.malts.utility.Text;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Every SQL file under {@code resources/sql}, read once when the {@link DataSource} is created.
+ * <p>
+ * Paths are relative to the {@code sql} folder, e.g. {@code vaults/select_vault.sql}.
+ * Files inside a dialect folder (e.g. {@code vaults/sqlite/insert_or_update_vault.sql}) are
+ * validated against the active {@link Driver} so a missing dialect specific statement
+ * fails on startup instead of on the first query that needs it.
+ */
+public final class StatementCatalog {
+
+    private static final String ROOT = "sql/";
+    private static final String EXTENSION = ".sql";
+
+    private final Driver driver;
+    private final Map<String, String> statements;
+    private final Map<String, String[]> splitStatements = new ConcurrentHashMap<>();
+
+    public StatementCatalog(@NotNull Driver driver) {
+        Preconditions.checkNotNull(driver, "driver cannot be null");
+        this.driver = driver;
+
+        Map<String, String> statements = new HashMap<>();
+        for (String path : listResources()) {
+            statements.put(path, FileUtil.readInternalResource(ROOT + path));
+        }
+        this.statements = Collections.unmodifiableMap(statements);
+        this.validate();
+        Text.debug("Loaded " + statements.size() + " SQL statements for " + driver);
+    }
+
+    /**
+     * @param path the path of the SQL file relative to the sql folder
+     * @return the contents of the file
+     * @throws IllegalArgumentException if no such file exists
+     */
+    @NotNull
+    public String get(String path) {
+        String statement = statements.get(path);
+        if (statement == null) {
+            throw new IllegalArgumentException("SQL statement not found: " + path);
+        }
+        return statement;
+    }
+
+    /**
+     * Gets a file which contains multiple statements split on {@code ;}.
+     *
+     * @param path the path of the SQL file relative to the sql folder
+     * @return each statement in the file, with its semicolon
+     */
+    @NotNull
+    public String[] getAll(String path) {
+        return splitStatements.computeIfAbsent(path, key -> {
+            List<String> split = new ArrayList<>();
+            for (String statement : this.get(key).split(";")) {
+                if (!statement.isBlank()) {
+                    // re-append the semicolon to each statement
+                    split.add(statement.trim() + ";");
+                }
+            }
+            return split.toArray(String[]::new);
+        }).clone();
+    }
+
+    public int size() {
+        return statements.size();
+    }
+
+    private void validate() {
+        String dialect = driver.getDialect();
+        Set<String> missing = new TreeSet<>();
+
+        for (String path : statements.keySet()) {
+            for (Driver other : Driver.values()) {
+                String otherFolder = "/" + other.getDialect() + "/";
+                if (other == driver || !path.contains(otherFolder)) {
+                    continue;
+                }
+                String expected = path.replace(otherFolder, "/" + dialect + "/");
+                if (!statements.containsKey(expected)) {
+                    missing.add(expected);
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("Missing " + driver + " SQL statements: " + missing);
+        }
+    }
+
+    private static List<String> listResources() {
+        Path source;
+        try {
+            source = Path.of(Malts.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Could not locate the Malts jar", e);
+        }
+
+        List<String> paths = new ArrayList<>();
+        try {
+            if (Files.isDirectory(source)) {
+                // Running from exploded classes
+                Path root = source.resolve(ROOT);
+                if (Files.isDirectory(root)) {
+                    try (Stream<Path> files = Files.walk(root)) {
+                        files.filter(file -> file.toString().endsWith(EXTENSION))
+                                .forEach(file -> paths.add(root.relativize(file).toString().replace('\\', '/')));
+                    }
+                }
+            } else {
+                try (JarFile jar = new JarFile(source.toFile())) {
+                    Enumeration<JarEntry> entries = jar.entries();
+                    while (entries.hasMoreElements()) {
+                        String name = entries.nextElement().getName();
+                        if (name.startsWith(ROOT) && name.endsWith(EXTENSION)) {
+                            paths.add(name.substring(ROOT.length()));
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not list SQL statements in " + source, e);
+        }
+        return paths;
+    }
+
+    @Override
+    public String toString() {
+        return "StatementCatalog{" +
+                "driver=" + driver +
+                ", statements=" + statements.size() +
+                '}';
+    }
+}
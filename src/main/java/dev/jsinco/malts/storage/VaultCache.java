@@ -0,0 +1,203 @@
+package dev.jsinco.malts.storage;
+
+import com.google.common.base.Preconditions;
+import dev.jsinco.malts.obj.Vault;
+import dev.jsinco.malts.obj.VaultKey;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Least recently used cache of loaded {@link Vault}s, bounded by the approximate
+ * size of each vault in storage rather than by the number of vaults.
+ * <p>
+ * The {@link DataSource} puts every vault it saves in here, so a cached vault
+ * is never older than what storage holds.
+ * <p>
+ * Vaults can also be pinned while they're open. A pinned vault is never evicted and
+ * is the only instance handed out for its key, so every viewer shares its inventory.
+ *
+ * @see Vault#getStoredBytes()
+ */
+public final class VaultCache {
+
+    // Floor per vault so many empty vaults still count towards the limit
+    private static final int MIN_WEIGHT = 256;
+
+    private final LinkedHashMap<VaultKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<VaultKey, Vault> pinned = new HashMap<>();
+    @Getter
+    private final long maxWeight;
+    @Getter
+    private long weight;
+    @Getter
+    private long hits;
+    @Getter
+    private long misses;
+    @Getter
+    private long evictions;
+
+    /**
+     * @param maxWeight the maximum total weight in bytes, 0 or less disables the cache
+     */
+    public VaultCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    @Nullable
+    public synchronized Vault get(@NotNull VaultKey key) {
+        Vault pinnedVault = pinned.get(key);
+        if (pinnedVault != null) {
+            hits++;
+            return pinnedVault;
+        }
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.vault();
+    }
+
+    /**
+     * Caches a vault which was just read from storage, unless the same vault is already cached.
+     *
+     * @param vault the vault that was read
+     * @return the cached vault, which is the given vault unless another instance was cached first
+     */
+    @NotNull
+    public synchronized Vault putIfAbsent(@NotNull Vault vault) {
+        Preconditions.checkNotNull(vault, "vault cannot be null");
+        Vault pinnedVault = pinned.get(vault.getKey());
+        if (pinnedVault != null) {
+            return pinnedVault;
+        }
+        Entry existing = entries.get(vault.getKey());
+        if (existing != null) {
+            return existing.vault();
+        }
+        this.put(vault);
+        return vault;
+    }
+
+    /**
+     * Caches a vault, replacing any other instance cached for the same key
+     * unless a different instance is pinned.
+     *
+     * @param vault the vault to cache
+     */
+    public synchronized void put(@NotNull Vault vault) {
+        Preconditions.checkNotNull(vault, "vault cannot be null");
+        Vault pinnedVault = pinned.get(vault.getKey());
+        if (maxWeight <= 0 || (pinnedVault != null && pinnedVault != vault)) {
+            return;
+        }
+
+        Entry entry = new Entry(vault, Math.max(MIN_WEIGHT, vault.getStoredBytes()));
+        Entry previous = entries.put(vault.getKey(), entry);
+        if (previous != null) {
+            weight -= previous.weight();
+        }
+        weight += entry.weight();
+        this.evict();
+    }
+
+    /**
+     * Pins a vault while it's open, unless another instance is already pinned.
+     *
+     * @param vault the vault being opened
+     * @return the pinned vault, which every viewer should use
+     */
+    @NotNull
+    public synchronized Vault pin(@NotNull Vault vault) {
+        Preconditions.checkNotNull(vault, "vault cannot be null");
+        Vault existing = pinned.putIfAbsent(vault.getKey(), vault);
+        return existing != null ? existing : vault;
+    }
+
+    /**
+     * Unpins a vault once nobody is viewing it, it stays cached like any other vault.
+     *
+     * @param vault the pinned vault
+     */
+    public synchronized void unpin(@NotNull Vault vault) {
+        if (pinned.remove(vault.getKey(), vault)) {
+            this.put(vault);
+        }
+    }
+
+    @Nullable
+    public synchronized Vault getPinned(@NotNull VaultKey key) {
+        return pinned.get(key);
+    }
+
+    // Pinned vaults are left alone, they stay pinned until their viewers close them
+    public synchronized void invalidate(@NotNull VaultKey key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            weight -= removed.weight();
+        }
+    }
+
+    public synchronized void invalidate(@NotNull UUID owner) {
+        entries.values().removeIf(entry -> {
+            if (entry.vault().getKey().owner().equals(owner)) {
+                weight -= entry.weight();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        pinned.clear();
+        weight = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the fraction of lookups which were served from the cache, or 0 if there were none
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<VaultKey, Entry>> iterator = entries.entrySet().iterator();
+        // Always keep the entry that was just added
+        while (weight > maxWeight && entries.size() > 1 && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            weight -= eldest.weight();
+            evictions++;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "VaultCache{" +
+                "size=" + entries.size() +
+                ", pinned=" + pinned.size() +
+                ", weight=" + weight +
+                ", maxWeight=" + maxWeight +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+
+    private record Entry(Vault vault, int weight) {
+    }
+}
@@ -0,0 +1,127 @@
+package dev.jsinco.malts.storage;
+
+import com.google.common.base.Preconditions;
+import dev.jsinco.malts.obj.VaultKey;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per vault locks held while a vault is being saved. Instead of refusing to open a
+ * locked vault, callers wait on {@link #awaitUnlock(VaultKey)} and open it once every
+ * save holding the lock has finished.
+ * <p>
+ * A vault may be locked several times at once (e.g. two viewers closing it), it is
+ * unlocked once every lock has been released.
+ */
+public final class VaultLocks {
+
+    private final ConcurrentHashMap<VaultKey, Lock> locks = new ConcurrentHashMap<>();
+    private final long timeoutMillis;
+
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder totalWaitMillis = new LongAdder();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+
+    /**
+     * @param timeoutMillis how long {@link #awaitUnlock(VaultKey)} waits before giving up
+     */
+    public VaultLocks(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public boolean isLocked(@NotNull VaultKey key) {
+        return locks.containsKey(key);
+    }
+
+    public void lock(@NotNull VaultKey key) {
+        Preconditions.checkNotNull(key, "key cannot be null");
+        locks.compute(key, (k, lock) -> {
+            Lock held = lock != null ? lock : new Lock();
+            held.holds++;
+            return held;
+        });
+    }
+
+    public void release(@NotNull VaultKey key) {
+        Preconditions.checkNotNull(key, "key cannot be null");
+        AtomicReference<CompletableFuture<Void>> released = new AtomicReference<>();
+        locks.computeIfPresent(key, (k, lock) -> {
+            if (--lock.holds > 0) {
+                return lock;
+            }
+            released.set(lock.released);
+            return null;
+        });
+        // Completed outside of compute, waiters may lock the vault again
+        if (released.get() != null) {
+            released.get().complete(null);
+        }
+    }
+
+    /**
+     * Waits for a vault to be unlocked.
+     *
+     * @param key the vault to wait for
+     * @return a future completing with true once the vault is unlocked, or false if it
+     * was still locked after the timeout. Completes immediately if the vault isn't locked.
+     */
+    public CompletableFuture<Boolean> awaitUnlock(@NotNull VaultKey key) {
+        Lock lock = locks.get(key);
+        if (lock == null) {
+            return CompletableFuture.completedFuture(true);
+        }
+
+        long start = System.currentTimeMillis();
+        return lock.released.copy()
+                .thenApply(unused -> true)
+                .completeOnTimeout(false, timeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((unlocked, throwable) -> {
+                    long waited = System.currentTimeMillis() - start;
+                    waits.increment();
+                    totalWaitMillis.add(waited);
+                    maxWaitMillis.accumulateAndGet(waited, Math::max);
+                    if (!Boolean.TRUE.equals(unlocked)) {
+                        timeouts.increment();
+                    }
+                });
+    }
+
+    public int size() {
+        return locks.size();
+    }
+
+    public long getWaits() {
+        return waits.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = waits.sum();
+        return count == 0 ? 0 : totalWaitMillis.sum() / (double) count;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("VaultLocks{locked=%d, waits=%d, timeouts=%d, avgWait=%.1fms, maxWait=%dms}",
+                this.size(), this.getWaits(), this.getTimeouts(), this.getAverageWaitMillis(), this.getMaxWaitMillis());
+    }
+
+    private static final class Lock {
+        private final CompletableFuture<Void> released = new CompletableFuture<>();
+        private int holds;
+    }
+}
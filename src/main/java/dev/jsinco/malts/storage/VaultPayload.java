@@ -0,0 +1,70 @@
+package dev.jsinco.malts.storage;
+
+import com.google.common.base.Preconditions;
+import dev.jsinco.malts.enums.Compression;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Binary format used to store vault contents in the {@code inventory_data} column.
+ * <pre>
+ * magic        2 bytes  'M' 'V'
+ * version      1 byte   {@link #VERSION}
+ * compression  1 byte   {@link Compression#getId()}
+ * length       4 bytes  length of the uncompressed body
+ * body         n bytes  {@code ItemStack.serializeItemsAsBytes}, compressed
+ * </pre>
+ * Rows written before this format existed keep their Base64 text in the
+ * {@code inventory} column until the vault is saved again.
+ */
+public final class VaultPayload {
+
+    public static final byte VERSION = 1;
+    private static final byte MAGIC_0 = 'M';
+    private static final byte MAGIC_1 = 'V';
+    private static final int HEADER_LENGTH = 8;
+
+    private VaultPayload() {
+    }
+
+    public static byte[] encode(byte[] items, Compression compression) {
+        Preconditions.checkNotNull(items, "items cannot be null");
+        Preconditions.checkNotNull(compression, "compression cannot be null");
+
+        byte[] body = compression.compress(items);
+        // Not worth it for tiny or incompressible vaults
+        if (compression != Compression.NONE && body.length >= items.length) {
+            compression = Compression.NONE;
+            body = items;
+        }
+
+        return ByteBuffer.allocate(HEADER_LENGTH + body.length)
+                .put(MAGIC_0)
+                .put(MAGIC_1)
+                .put(VERSION)
+                .put((byte) compression.getId())
+                .putInt(items.length)
+                .put(body)
+                .array();
+    }
+
+    public static byte[] decode(byte[] payload) {
+        Preconditions.checkArgument(isPayload(payload), "Not a vault payload");
+
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        buffer.position(2);
+        byte version = buffer.get();
+        if (version > VERSION) {
+            throw new IllegalArgumentException("Vault payload version " + version + " is newer than this version of Malts supports");
+        }
+        Compression compression = Compression.fromId(buffer.get());
+        int length = buffer.getInt();
+        byte[] body = Arrays.copyOfRange(payload, HEADER_LENGTH, payload.length);
+        return compression.decompress(body, length);
+    }
+
+    public static boolean isPayload(byte[] data) {
+        return data != null && data.length >= HEADER_LENGTH && data[0] == MAGIC_0 && data[1] == MAGIC_1;
+    }
+}
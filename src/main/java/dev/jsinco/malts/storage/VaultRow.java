@@ -0,0 +1,116 @@
+package dev.jsinco.malts.storage;
+
+import dev.jsinco.malts.obj.Vault;
+import dev.jsinco.malts.obj.VaultKey;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A vault's contents as stored, read by jobs which walk every vault in pages
+ * without loading them as {@link Vault}s.
+ *
+ * @param owner the owner of the vault
+ * @param id the id of the vault
+ * @param inventory the legacy Base64 contents, only set if the vault was never stored as a payload
+ * @param data the contents as a {@link VaultPayload}
+ * @param deltas slots changed since the payload was written, only read if asked for
+ */
+record VaultRow(UUID owner, int id, @Nullable String inventory, byte @Nullable [] data, Map<Integer, byte[]> deltas) {
+
+    /**
+     * Reads the next page of vaults ordered by owner and id.
+     *
+     * @param dataSource the data source the vaults are stored in
+     * @param connection the connection to read with
+     * @param after the last vault of the previous page, null for the first page
+     * @param limit how many vaults to read
+     * @param withDeltas whether to read the slot deltas of each vault too
+     * @return the page, shorter than the limit if it was the last one
+     */
+    static List<VaultRow> readPage(DataSource dataSource, Connection connection, @Nullable VaultKey after, int limit, boolean withDeltas) throws SQLException {
+        List<VaultRow> rows = new ArrayList<>(limit);
+        PreparedStatement statement;
+        if (after == null) {
+            statement = connection.prepareStatement(dataSource.getStatement("vaults/select_first_vault_data_page.sql"));
+            statement.setInt(1, limit);
+        } else {
+            statement = connection.prepareStatement(dataSource.getStatement("vaults/select_vault_data_page.sql"));
+            dataSource.setUuid(statement, 1, after.owner());
+            dataSource.setUuid(statement, 2, after.owner());
+            statement.setInt(3, after.id());
+            statement.setInt(4, limit);
+        }
+
+        try (statement; ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                rows.add(new VaultRow(dataSource.getUuid(rs, "owner"), rs.getInt("id"),
+                        rs.getString("inventory"), rs.getBytes("inventory_data"), new HashMap<>()));
+            }
+        }
+
+        if (withDeltas) {
+            try (PreparedStatement slots = connection.prepareStatement(dataSource.getStatement("vaults/select_vault_slots.sql"))) {
+                for (VaultRow row : rows) {
+                    if (row.data() == null) {
+                        continue; // Legacy rows never have deltas
+                    }
+                    dataSource.setUuid(slots, 1, row.owner());
+                    slots.setInt(2, row.id());
+                    try (ResultSet rs = slots.executeQuery()) {
+                        while (rs.next()) {
+                            row.deltas().put(rs.getInt("slot"), rs.getBytes("item"));
+                        }
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    public VaultKey key() {
+        return VaultKey.of(owner, id);
+    }
+
+    /**
+     * Decodes the stored contents, without slot deltas.
+     *
+     * @return the contents, or null if the vault has none stored
+     */
+    @Nullable
+    public ItemStack[] decodeStored() {
+        if (data != null && VaultPayload.isPayload(data)) {
+            return ItemStack.deserializeItemsFromBytes(VaultPayload.decode(data));
+        } else if (data == null && inventory != null && !inventory.isEmpty()) {
+            return ItemStack.deserializeItemsFromBytes(Base64.getDecoder().decode(inventory));
+        }
+        return null;
+    }
+
+    /**
+     * Applies slot deltas to decoded contents, the result is what a player opening the vault sees.
+     *
+     * @param stored the contents from {@link #decodeStored()}
+     * @return every slot of the vault, empty slots are null
+     */
+    public Map<Integer, ItemStack> withDeltas(ItemStack[] stored) {
+        Map<Integer, ItemStack> slots = new HashMap<>();
+        for (int slot = 0; slot < stored.length; slot++) {
+            slots.put(slot, stored[slot]);
+        }
+        for (Map.Entry<Integer, byte[]> delta : deltas.entrySet()) {
+            slots.put(delta.getKey(), Vault.decodeSlot(delta.getValue()));
+        }
+        return slots;
+    }
+}
@@ -0,0 +1,213 @@
+package dev.jsinco.malts.storage;
+
+import dev.jsinco.malts.Malts;
+import dev.jsinco.malts.obj.VaultKey;
+import dev.jsinco.malts.obj.VaultSnapshot;
+import dev.jsinco.malts.utility.Executors;
+import dev.jsinco.malts.utility.Text;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Write-behind queue that sits in front of a {@link DataSource}'s vault writes.
+ * Saves of the same {@link VaultKey} made within the batch window are collapsed into
+ * the latest state and every vault in the window is written as one batch.
+ * <p>
+ * Vaults are queued as {@link VaultSnapshot}s taken by the caller, so nothing here
+ * or in the writer touches a vault's live inventory.
+ * <p>
+ * Each call to {@link #enqueue(VaultSnapshot)} returns a future which completes once
+ * that vault's batch has been written, so callers can still wait for durability.
+ * Batches are written one after another and never overlap.
+ */
+public final class VaultSaveQueue {
+
+    private final long windowMillis;
+    private final Function<Collection<VaultSnapshot>, CompletableFuture<Void>> writer;
+
+    private final Map<VaultKey, PendingSave> pending = new LinkedHashMap<>();
+    private CompletableFuture<Void> inFlight = CompletableFuture.completedFuture(null);
+    // The latest batch holding each owner's vaults, so reads only wait on their own writes
+    private final Map<UUID, CompletableFuture<Void>> inFlightByOwner = new HashMap<>();
+    private ScheduledTask flushTask;
+
+    private long coalesced;
+
+    /**
+     * @param windowMillis how long to collect saves before writing them, 0 to write immediately
+     * @param writer writes a batch of vaults in a single transaction
+     */
+    public VaultSaveQueue(long windowMillis, Function<Collection<VaultSnapshot>, CompletableFuture<Void>> writer) {
+        this.windowMillis = windowMillis;
+        this.writer = writer;
+    }
+
+    /**
+     * Queues a vault to be saved. If this vault is already waiting to be saved,
+     * the pending snapshot is replaced by this newer one and both callers share the same future.
+     *
+     * @param snapshot the snapshot of the vault to save
+     * @return a future which completes when the vault has been written
+     */
+    public synchronized CompletableFuture<Void> enqueue(@NotNull VaultSnapshot snapshot) {
+        VaultKey key = snapshot.vault().getKey();
+        PendingSave save = pending.get(key);
+        if (save == null) {
+            save = new PendingSave();
+            pending.put(key, save);
+        } else {
+            coalesced++;
+        }
+        save.snapshot = snapshot;
+
+        if (windowMillis <= 0 || Malts.isShutdown()) {
+            flush();
+        } else if (flushTask == null) {
+            flushTask = Executors.runDelayedAsync(windowMillis, TimeUnit.MILLISECONDS, task -> flush());
+        }
+        return save.future;
+    }
+
+    /**
+     * Writes everything that is currently queued without waiting for the batch window.
+     *
+     * @return a future which completes once every queued and in flight save has been written
+     */
+    public synchronized CompletableFuture<Void> flush() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        if (pending.isEmpty()) {
+            return inFlight;
+        }
+
+        List<PendingSave> batch = new ArrayList<>(pending.values());
+        Set<UUID> owners = new HashSet<>();
+        for (VaultKey key : pending.keySet()) {
+            owners.add(key.owner());
+        }
+        pending.clear();
+
+        CompletableFuture<Void> written = inFlight
+                .handle((unused, throwable) -> null)
+                .thenCompose(unused -> this.write(batch));
+        inFlight = written;
+        for (UUID owner : owners) {
+            inFlightByOwner.put(owner, written);
+        }
+        written.whenComplete((unused, throwable) -> this.written(owners, written));
+        return written;
+    }
+
+    /**
+     * Gets a future which completes once every queued and in flight save for the given owner
+     * has been written. Reads should wait on this so they never see older data than what was saved.
+     * Saves of other owners' vaults are never waited on.
+     *
+     * @param owner the owner of the vaults
+     * @return a future which completes when it is safe to read the owner's vaults
+     */
+    public synchronized CompletableFuture<Void> awaitOwner(UUID owner) {
+        for (VaultKey key : pending.keySet()) {
+            if (key.owner().equals(owner)) {
+                flush();
+                break;
+            }
+        }
+        CompletableFuture<Void> written = inFlightByOwner.get(owner);
+        return written != null ? written : CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Drops a queued save for a vault, usually because the vault is being deleted.
+     * The dropped save's future completes normally.
+     *
+     * @param key the key of the vault
+     */
+    public synchronized void discard(VaultKey key) {
+        PendingSave save = pending.remove(key);
+        if (save != null) {
+            save.future.complete(null);
+        }
+    }
+
+    /**
+     * Drops every queued save for an owner's vaults.
+     *
+     * @param owner the owner of the vaults
+     */
+    public synchronized void discard(UUID owner) {
+        pending.entrySet().removeIf(entry -> {
+            if (!entry.getKey().owner().equals(owner)) {
+                return false;
+            }
+            entry.getValue().future.complete(null);
+            return true;
+        });
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * @return how many saves were collapsed into an already queued save of the same vault
+     */
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    private synchronized void written(Set<UUID> owners, CompletableFuture<Void> batch) {
+        for (UUID owner : owners) {
+            inFlightByOwner.remove(owner, batch);
+        }
+    }
+
+    private CompletableFuture<Void> write(List<PendingSave> batch) {
+        List<VaultSnapshot> vaults = new ArrayList<>(batch.size());
+        for (PendingSave save : batch) {
+            vaults.add(save.snapshot);
+        }
+
+        return writer.apply(vaults).whenComplete((unused, throwable) -> {
+            Text.debug("Wrote batch of " + vaults.size() + " vault(s), " + this.getCoalesced() + " save(s) coalesced so far");
+
+            for (PendingSave save : batch) {
+                if (throwable != null) {
+                    save.future.completeExceptionally(throwable);
+                } else {
+                    save.future.complete(null);
+                }
+            }
+        });
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "VaultSaveQueue{" +
+                "windowMillis=" + windowMillis +
+                ", pending=" + pending.size() +
+                ", ownersInFlight=" + inFlightByOwner.size() +
+                ", coalesced=" + coalesced +
+                '}';
+    }
+
+    private static final class PendingSave {
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private volatile VaultSnapshot snapshot;
+    }
+}
@@ -4,13 +4,14 @@ import com.zaxxer.hikari.HikariConfig;
 import dev.jsinco.malts.configuration.files.Config;
 import dev.jsinco.malts.obj.MaltsPlayer;
 import dev.jsinco.malts.obj.SnapshotVault;
-import dev.jsinco.malts.obj.Stock;
 import dev.jsinco.malts.obj.Vault;
+import dev.jsinco.malts.obj.VaultKey;
+import dev.jsinco.malts.obj.VaultSnapshot;
 import dev.jsinco.malts.obj.Warehouse;
+import dev.jsinco.malts.obj.WarehouseChanges;
 import dev.jsinco.malts.storage.DataSource;
 import dev.jsinco.malts.utility.Executors;
 import dev.jsinco.malts.utility.Text;
-import org.bukkit.Material;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -20,9 +21,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -41,6 +40,13 @@ public class MySQLDataSource extends DataSource {
         hikariConfig.setJdbcUrl("jdbc:mysql://" + config.host() + ":" + config.port() + "/" + config.database() + config.jdbcFlags());
         hikariConfig.setUsername(config.username());
         hikariConfig.setPassword(config.password());
+        // Let Connector/J parse each statement once per connection and reuse it
+        hikariConfig.addDataSourceProperty("cachePrepStmts", "true");
+        hikariConfig.addDataSourceProperty("prepStmtCacheSize", "250");
+        hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        hikariConfig.addDataSourceProperty("useServerPrepStmts", "true");
+        // Without this Connector/J ignores fetch sizes and reads whole result sets into memory
+        hikariConfig.addDataSourceProperty("useCursorFetch", "true");
         hikariConfig.setMaximumPoolSize(10);
         return hikariConfig;
     }
@@ -49,7 +55,8 @@ public class MySQLDataSource extends DataSource {
     public CompletableFuture<Void> createTables() {
         return Executors.supplyAsyncWithSQLException(() -> {
             try (Connection connection = this.connection()) {
-                for (String statement : this.getStatements("tables/mysql/create_tables.sql")) {
+                this.getKeySchema().prepare(connection);
+                for (String statement : this.getStatements(this.getKeySchema().createTablesPath())) {
 
                     // 1) 兼容：去掉 SQL 里的单行注释（否则 statement 可能以 "-- Migration code" 开头）
                     String cleaned = statement == null ? "" : statement
@@ -75,6 +82,11 @@ public class MySQLDataSource extends DataSource {
                         throw ex;
                     }
                 }
+
+                // Old rows are streamed on a second connection, Connector/J can't run other statements while streaming
+                try (Connection readConnection = this.readConnection()) {
+                    this.getKeySchema().complete(connection, readConnection, Integer.MIN_VALUE);
+                }
             }
             return null;
         });
@@ -83,9 +95,13 @@ public class MySQLDataSource extends DataSource {
     private static boolean shouldIgnoreSchemaMigrationError(String statement, SQLException ex) {
         String u = statement == null ? "" : statement.trim().toUpperCase();
 
-        // 只对 “ALTER TABLE ... ADD COLUMN quick_return_click_type ...” 容错
+        // MySQL has no CREATE INDEX IF NOT EXISTS, ER_DUP_KEYNAME = 1061 when it already exists
+        if (u.startsWith("CREATE INDEX")) {
+            return ex.getErrorCode() == 1061;
+        }
+
+        // 只对 “ALTER TABLE ... ADD COLUMN ...” 迁移语句容错
         if (!u.contains("ALTER TABLE") || !u.contains("ADD") || !u.contains("COLUMN")) return false;
-        if (!u.contains("QUICK_RETURN_CLICK_TYPE")) return false;
 
         // MySQL: ER_DUP_FIELDNAME = 1060, SQLState = 42S21
         if (ex.getErrorCode() == 1060) return true;
@@ -100,121 +116,151 @@ public class MySQLDataSource extends DataSource {
     }
 
     @Override
-    public CompletableFuture<Vault> getVault(UUID owner, int id, boolean createIfNull) {
-        return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("vaults/select_vault.sql")
-                );
-                statement.setString(1, owner.toString());
+    protected CompletableFuture<@Nullable Vault> loadVault(UUID owner, int id, boolean createIfNull) {
+        return this.afterPendingSaves(owner, () -> Executors.supplyAsyncWithSQLException(() -> {
+            try (Connection connection = this.readConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         this.getStatement("vaults/select_vault.sql")
+                 )) {
+                this.setUuid(statement, 1, owner);
                 statement.setInt(2, id);
                 ResultSet resultSet = statement.executeQuery();
-                return this.mapVault(resultSet, owner, id, createIfNull);
+                return this.loadSlotDeltas(connection, this.mapVault(resultSet, owner, id, createIfNull));
             }
-        });
+        }));
     }
 
     @Override
-    public CompletableFuture<@Nullable Vault> getVault(UUID owner, String customName) {
-        return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("vaults/select_vault_by_name.sql")
-                );
-                statement.setString(1, owner.toString());
+    protected CompletableFuture<@Nullable Vault> loadVault(UUID owner, String customName) {
+        return this.afterPendingSaves(owner, () -> Executors.supplyAsyncWithSQLException(() -> {
+            try (Connection connection = this.readConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         this.getStatement("vaults/select_vault_by_name.sql")
+                 )) {
+                this.setUuid(statement, 1, owner);
                 statement.setString(2, customName);
                 ResultSet resultSet = statement.executeQuery();
-                return this.mapVault(resultSet, owner);
+                return this.loadSlotDeltas(connection, this.mapVault(resultSet, owner));
             }
-        });
+        }));
     }
 
     @Override
     public CompletableFuture<@NotNull Collection<SnapshotVault>> getVaults(UUID owner) {
-        return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("vaults/select_owned_vaults.sql")
-                );
-                statement.setString(1, owner.toString());
+        return this.afterPendingSaves(owner, () -> Executors.supplyAsyncWithSQLException(() -> {
+            try (Connection connection = this.readConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         this.getStatement("vaults/select_owned_vaults.sql")
+                 )) {
+                this.setUuid(statement, 1, owner);
                 ResultSet resultSet = statement.executeQuery();
                 return this.mapSnapshotVaults(resultSet, owner);
             }
-        });
+        }));
     }
 
     @Override
-    public CompletableFuture<Void> saveVault(Vault vault) {
-        return Executors.supplyAsyncWithSQLException(() -> {
+    public CompletableFuture<@NotNull Boolean> hasVaults(UUID owner) {
+        return this.afterPendingSaves(owner, () -> Executors.supplyAsyncWithSQLException(() -> {
+            try (Connection connection = this.readConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         this.getStatement("vaults/select_has_vaults.sql")
+                 )) {
+                this.setUuid(statement, 1, owner);
+                ResultSet resultSet = statement.executeQuery();
+                return resultSet.next();
+            }
+        }));
+    }
+
+    @Override
+    protected CompletableFuture<Void> saveVaults(Collection<VaultSnapshot> vaults) {
+        return Executors.supplyAsyncPropagatingSQLException(() -> {
             try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("vaults/mysql/insert_or_update_vault.sql")
+                this.writeVaults(
+                        connection,
+                        vaults,
+                        "vaults/mysql/insert_or_update_vault.sql",
+                        "vaults/mysql/insert_or_update_vault_slot.sql"
                 );
-                statement.setString(1, vault.getOwner().toString());
-                statement.setInt(2, vault.getId());
-                statement.setString(3, vault.encodeInventory());
-                statement.setString(4, vault.getCustomName());
-                statement.setString(5, vault.getIcon().toString());
-                statement.setString(6, vault.encodeTrusted());
-                statement.executeUpdate();
-                Text.debug("Saved vault: " + vault.getOwner() + " #" + vault.getId());
             }
             return null;
-        });
+        }, Executors.databaseExecutor());
     }
 
     @Override
     public CompletableFuture<Boolean> deleteVault(UUID owner, int id) {
-        return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("vaults/delete_vault.sql")
-                );
-                statement.setString(1, owner.toString());
+        this.getVaultCache().invalidate(VaultKey.of(owner, id));
+        this.getSearchSessions().invalidate(owner);
+        this.getVaultSaveQueue().discard(VaultKey.of(owner, id));
+        return this.afterPendingSaves(owner, () -> Executors.supplyAsyncWithSQLException(() -> {
+            try (Connection connection = this.connection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         this.getStatement("vaults/delete_vault.sql")
+                 )) {
+                this.setUuid(statement, 1, owner);
                 statement.setInt(2, id);
                 int rowsAffected = statement.executeUpdate();
+
+                try (PreparedStatement slotStatement = connection.prepareStatement(
+                        this.getStatement("vaults/delete_vault_slots.sql")
+                )) {
+                    this.setUuid(slotStatement, 1, owner);
+                    slotStatement.setInt(2, id);
+                    slotStatement.executeUpdate();
+                }
+                try (PreparedStatement indexStatement = connection.prepareStatement(
+                        this.getStatement("index/delete_vault_index.sql")
+                )) {
+                    this.setUuid(indexStatement, 1, owner);
+                    indexStatement.setInt(2, id);
+                    indexStatement.executeUpdate();
+                }
                 Text.debug("Attempted to delete vault: " + owner + " #" + id);
                 return rowsAffected > 0;
             }
-        });
+        }));
     }
 
     @Override
     public CompletableFuture<@NotNull Integer> deleteVaults(UUID owner) {
-        return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("vaults/delete_all_vaults.sql")
-                );
-                statement.setString(1, owner.toString());
+        this.getVaultCache().invalidate(owner);
+        this.getSearchSessions().invalidate(owner);
+        this.getVaultSaveQueue().discard(owner);
+        return this.afterPendingSaves(owner, () -> Executors.supplyAsyncWithSQLException(() -> {
+            try (Connection connection = this.connection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         this.getStatement("vaults/delete_all_vaults.sql")
+                 )) {
+                this.setUuid(statement, 1, owner);
                 int rowsAffected = statement.executeUpdate();
+
+                try (PreparedStatement slotStatement = connection.prepareStatement(
+                        this.getStatement("vaults/delete_all_vault_slots.sql")
+                )) {
+                    this.setUuid(slotStatement, 1, owner);
+                    slotStatement.executeUpdate();
+                }
+                try (PreparedStatement indexStatement = connection.prepareStatement(
+                        this.getStatement("index/delete_all_vault_index.sql")
+                )) {
+                    this.setUuid(indexStatement, 1, owner);
+                    indexStatement.executeUpdate();
+                }
                 Text.debug("Deleted all vaults for owner: " + owner);
                 return rowsAffected;
             }
-        });
-    }
-
-    @Override
-    public CompletableFuture<@NotNull Collection<Vault>> getAllVaults() {
-        return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("vaults/select_all_vaults.sql")
-                );
-                ResultSet resultSet = statement.executeQuery();
-                return this.mapVaults(resultSet);
-            }
-        });
+        }));
     }
 
     @Override
     public CompletableFuture<List<String>> getVaultNames(UUID owner) {
-        return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("vaults/select_vault_names.sql")
-                );
-                statement.setString(1, owner.toString());
+        return this.afterPendingSaves(owner, () -> Executors.supplyAsyncWithSQLException(() -> {
+            try (Connection connection = this.readConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         this.getStatement("vaults/select_vault_names.sql")
+                 )) {
+                this.setUuid(statement, 1, owner);
                 ResultSet resultSet = statement.executeQuery();
                 List<String> vaultNames = new ArrayList<>();
                 while (resultSet.next()) {
@@ -223,17 +269,17 @@ public class MySQLDataSource extends DataSource {
                 }
                 return vaultNames;
             }
-        });
+        }));
     }
 
     @Override
-    public CompletableFuture<@NotNull Warehouse> getWarehouse(UUID owner) {
+    protected CompletableFuture<@NotNull Warehouse> loadWarehouse(UUID owner) {
         return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement warehouseStatement = connection.prepareStatement(
-                        this.getStatement("warehouses/select_warehouse.sql")
-                );
-                warehouseStatement.setString(1, owner.toString());
+            try (Connection connection = this.readConnection();
+                 PreparedStatement warehouseStatement = connection.prepareStatement(
+                         this.getStatement("warehouses/select_warehouse.sql")
+                 )) {
+                this.setUuid(warehouseStatement, 1, owner);
                 ResultSet resultSet = warehouseStatement.executeQuery();
                 return this.mapWarehouse(resultSet, owner);
             }
@@ -241,63 +287,21 @@ public class MySQLDataSource extends DataSource {
     }
 
     @Override
-    public CompletableFuture<Void> saveWarehouse(Warehouse warehouse) {
+    protected CompletableFuture<Void> saveWarehouseChanges(Warehouse warehouse, WarehouseChanges changes) {
         return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                UUID owner = warehouse.getOwner();
-                Map<Material, Stock> map = warehouse.stock();
-
-                // Execute INSERT/UPDATE
-                try (PreparedStatement ps = connection.prepareStatement(
-                        this.getStatement("warehouses/mysql/insert_or_update_warehouse.sql")
-                )) {
-                    for (Map.Entry<Material, Stock> entry : map.entrySet()) {
-                        ps.setString(1, owner.toString());
-                        ps.setString(2, entry.getKey().name());
-                        ps.setInt(3, entry.getValue().getAmount());
-                        ps.setLong(4, entry.getValue().getLastUpdate());
-                        ps.addBatch();
-                    }
-                    ps.executeBatch();
-                }
-
-                // Execute DELETE for removed items
-                if (map.isEmpty()) {
-                    try (PreparedStatement ps = connection.prepareStatement(
-                            this.getStatement("warehouses/delete_all_warehouse.sql")
-                    )) {
-                        ps.setString(1, owner.toString());
-                        ps.executeUpdate();
-                    }
-                } else {
-                    String placeholders = String.join(", ", Collections.nCopies(map.size(), "?"));
-                    String deleteSql = this.getStatement("warehouses/delete_stale_warehouse.sql")
-                            .replace("(?)", "(" + placeholders + ")");
-
-                    try (PreparedStatement ps = connection.prepareStatement(deleteSql)) {
-                        ps.setString(1, owner.toString());
-                        int i = 2;
-                        for (Material m : map.keySet()) {
-                            ps.setString(i++, m.name());
-                        }
-                        ps.executeUpdate();
-                    }
-                }
-            }
-
-            Text.debug("Saved warehouse: " + warehouse.getOwner());
+            this.writeWarehouse(warehouse, changes, "warehouses/mysql/insert_or_update_warehouse.sql");
             return null;
         });
     }
 
     @Override
-    public CompletableFuture<@NotNull MaltsPlayer> getMaltsPlayer(UUID uuid) {
+    protected CompletableFuture<@NotNull MaltsPlayer> loadMaltsPlayer(UUID uuid) {
         return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("players/select_player.sql")
-                );
-                statement.setString(1, uuid.toString());
+            try (Connection connection = this.readConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         this.getStatement("players/select_player.sql")
+                 )) {
+                this.setUuid(statement, 1, uuid);
                 ResultSet resultSet = statement.executeQuery();
                 return this.mapMaltsPlayer(resultSet, uuid);
             }
@@ -307,17 +311,7 @@ public class MySQLDataSource extends DataSource {
     @Override
     public CompletableFuture<Void> saveMaltsPlayer(MaltsPlayer maltsPlayer) {
         return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("players/mysql/insert_or_update_player.sql")
-                );
-                statement.setString(1, maltsPlayer.getUuid().toString());
-                statement.setInt(2, maltsPlayer.getMaxVaults());
-                statement.setInt(3, maltsPlayer.getMaxWarehouseStock());
-                statement.setString(4, maltsPlayer.getWarehouseMode().name());
-                statement.setString(5, maltsPlayer.getQuickReturnClickType().name());
-                statement.executeUpdate();
-            }
+            this.writeMaltsPlayer(maltsPlayer, "players/mysql/insert_or_update_player.sql");
             return null;
         });
     }
@@ -325,10 +319,10 @@ public class MySQLDataSource extends DataSource {
     @Override
     public CompletableFuture<Integer> getTotalVaultCount() {
         return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("vaults/total_vault_count.sql")
-                );
+            try (Connection connection = this.readConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         this.getStatement("vaults/total_vault_count.sql")
+                 )) {
                 ResultSet rs = statement.executeQuery();
                 if (rs.next()) {
                     return rs.getInt(1);
@@ -341,10 +335,10 @@ public class MySQLDataSource extends DataSource {
     @Override
     public CompletableFuture<Integer> getTotalWarehouseStockCount() {
         return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("warehouses/total_warehouse_stock.sql")
-                );
+            try (Connection connection = this.readConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         this.getStatement("warehouses/total_warehouse_stock.sql")
+                 )) {
                 ResultSet rs = statement.executeQuery();
                 if (rs.next()) {
                     return rs.getInt(1);
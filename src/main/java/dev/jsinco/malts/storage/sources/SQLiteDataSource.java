@@ -4,13 +4,14 @@ import com.zaxxer.hikari.HikariConfig;
 import dev.jsinco.malts.configuration.files.Config;
 import dev.jsinco.malts.obj.MaltsPlayer;
 import dev.jsinco.malts.obj.SnapshotVault;
-import dev.jsinco.malts.obj.Stock;
 import dev.jsinco.malts.obj.Vault;
+import dev.jsinco.malts.obj.VaultKey;
+import dev.jsinco.malts.obj.VaultSnapshot;
 import dev.jsinco.malts.obj.Warehouse;
+import dev.jsinco.malts.obj.WarehouseChanges;
 import dev.jsinco.malts.storage.DataSource;
 import dev.jsinco.malts.utility.Executors;
 import dev.jsinco.malts.utility.Text;
-import org.bukkit.Material;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -22,11 +23,11 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @SuppressWarnings("DuplicatedCode") // TODO: Extract out common code
 public class SQLiteDataSource extends DataSource {
@@ -37,6 +38,25 @@ public class SQLiteDataSource extends DataSource {
 
     @Override
     public HikariConfig hikariConfig(Config.Storage config) {
+        // SQLite only allows one writer at a time, so writes get a single pinned connection
+        HikariConfig hikariConfig = this.baseHikariConfig(config);
+        hikariConfig.setPoolName("MaltsSQLite");
+        hikariConfig.setMaximumPoolSize(1);
+        hikariConfig.setMinimumIdle(1);
+        return hikariConfig;
+    }
+
+    @Override
+    public HikariConfig readHikariConfig(Config.Storage config) {
+        HikariConfig hikariConfig = this.baseHikariConfig(config);
+        hikariConfig.setPoolName("MaltsSQLiteRead");
+        hikariConfig.setMaximumPoolSize(Math.max(1, config.sqlite().readPoolSize()));
+        hikariConfig.setConnectionInitSql("PRAGMA query_only = true;");
+        return hikariConfig;
+    }
+
+    private HikariConfig baseHikariConfig(Config.Storage config) {
+        Config.Storage.SQLite sqlite = config.sqlite();
         String fileName = config.database() + ".db";
         File file = DATA_FOLDER.resolve(fileName).toFile();
         try {
@@ -48,12 +68,13 @@ public class SQLiteDataSource extends DataSource {
             throw new RuntimeException("Could not create file or dirs", e);
         }
 
-
         HikariConfig hikariConfig = new HikariConfig();
-        hikariConfig.setPoolName("MaltsSQLite");
         hikariConfig.setDriverClassName("org.sqlite.JDBC");
         hikariConfig.setJdbcUrl("jdbc:sqlite:" + file);
-        hikariConfig.setMaximumPoolSize(10);
+        // Applied by the xerial driver as pragmas when each connection is opened
+        hikariConfig.addDataSourceProperty("journal_mode", sqlite.walMode() ? "WAL" : "DELETE");
+        hikariConfig.addDataSourceProperty("synchronous", sqlite.synchronous().toUpperCase(Locale.ROOT));
+        hikariConfig.addDataSourceProperty("busy_timeout", String.valueOf(sqlite.busyTimeout()));
         return hikariConfig;
     }
 
@@ -62,80 +83,100 @@ public class SQLiteDataSource extends DataSource {
     public CompletableFuture<Void> createTables() {
         return Executors.supplyAsyncWithSQLException(() -> {
             try (Connection connection = this.connection()) {
-                for (String statement : this.getStatements("tables/sqlite/create_tables.sql")) {
-                    connection.prepareStatement(statement).execute();
-                }
-            } catch (SQLException ex) {
-                // i hate sqlite so much
-                if (!ex.getMessage().contains("duplicate column name")) {
-                    ex.printStackTrace();
+                this.getKeySchema().prepare(connection);
+                for (String statement : this.getStatements(this.getKeySchema().createTablesPath())) {
+                    try (PreparedStatement ps = connection.prepareStatement(statement)) {
+                        ps.execute();
+                    } catch (SQLException ex) {
+                        // i hate sqlite so much
+                        // Migrations re-add columns on every start, keep going so later migrations still run
+                        if (ex.getMessage() == null || !ex.getMessage().contains("duplicate column name")) {
+                            throw ex;
+                        }
+                    }
                 }
+                // Old rows are read on the same connection, SQLite has no trouble interleaving a read with writes
+                this.getKeySchema().complete(connection, connection, 0);
             }
             return null;
         }, singleThread);
     }
 
     @Override
-    public CompletableFuture<@Nullable Vault> getVault(UUID owner, int id, boolean createIfNull) {
-        return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("vaults/select_vault.sql")
-                );
-                statement.setString(1, owner.toString());
+    protected CompletableFuture<@Nullable Vault> loadVault(UUID owner, int id, boolean createIfNull) {
+        return this.afterPendingSaves(owner, () -> Executors.supplyAsyncWithSQLException(() -> {
+            try (Connection connection = this.readConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         this.getStatement("vaults/select_vault.sql")
+                 )) {
+                this.setUuid(statement, 1, owner);
                 statement.setInt(2, id);
                 ResultSet resultSet = statement.executeQuery();
 
-                return this.mapVault(resultSet, owner, id, createIfNull);
+                return this.loadSlotDeltas(connection, this.mapVault(resultSet, owner, id, createIfNull));
             }
-        });
+        }));
     }
 
     @Override
-    public CompletableFuture<@Nullable Vault> getVault(UUID owner, String customName) {
-        return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("vaults/select_vault_by_name.sql")
-                );
-                statement.setString(1, owner.toString());
+    protected CompletableFuture<@Nullable Vault> loadVault(UUID owner, String customName) {
+        return this.afterPendingSaves(owner, () -> Executors.supplyAsyncWithSQLException(() -> {
+            try (Connection connection = this.readConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         this.getStatement("vaults/select_vault_by_name.sql")
+                 )) {
+                this.setUuid(statement, 1, owner);
                 statement.setString(2, customName);
                 ResultSet resultSet = statement.executeQuery();
 
-                return this.mapVault(resultSet, owner);
+                return this.loadSlotDeltas(connection, this.mapVault(resultSet, owner));
             }
-        }, singleThread);
+        }));
     }
 
     @Override
     public CompletableFuture<@NotNull Collection<SnapshotVault>> getVaults(UUID owner) {
-        return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("vaults/select_owned_vaults.sql")
-                );
-                statement.setString(1, owner.toString());
+        return this.afterPendingSaves(owner, () -> Executors.supplyAsyncWithSQLException(() -> {
+            try (Connection connection = this.readConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         this.getStatement("vaults/select_owned_vaults.sql")
+                 )) {
+                this.setUuid(statement, 1, owner);
                 ResultSet resultSet = statement.executeQuery();
                 return this.mapSnapshotVaults(resultSet, owner);
             }
-        });
+        }));
     }
 
     @Override
-    public CompletableFuture<Void> saveVault(Vault vault) {
-        return Executors.supplyAsyncWithSQLException(() -> {
+    public CompletableFuture<@NotNull Boolean> hasVaults(UUID owner) {
+        return this.afterPendingSaves(owner, () -> Executors.supplyAsyncWithSQLException(() -> {
+            try (Connection connection = this.readConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         this.getStatement("vaults/select_has_vaults.sql")
+                 )) {
+                this.setUuid(statement, 1, owner);
+                ResultSet resultSet = statement.executeQuery();
+                return resultSet.next();
+            }
+        }));
+    }
+
+    @Override
+    protected Executor writeExecutor() {
+        return singleThread;
+    }
+
+    @Override
+    protected CompletableFuture<Void> saveVaults(Collection<VaultSnapshot> vaults) {
+        return Executors.supplyAsyncPropagatingSQLException(() -> {
             try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("vaults/sqlite/insert_or_update_vault.sql")
+                this.writeVaults(
+                        connection,
+                        vaults,
+                        "vaults/sqlite/insert_or_update_vault.sql",
+                        "vaults/sqlite/insert_or_update_vault_slot.sql"
                 );
-                statement.setString(1, vault.getOwner().toString());
-                statement.setInt(2, vault.getId());
-                statement.setString(3, vault.encodeInventory());
-                statement.setString(4, vault.getCustomName());
-                statement.setString(5, vault.getIcon().toString());
-                statement.setString(6, vault.encodeTrusted());
-                statement.executeUpdate();
-                Text.debug("Saved vault: " + vault.getOwner() + " #" + vault.getId());
             }
             return null;
         }, singleThread);
@@ -143,60 +184,80 @@ public class SQLiteDataSource extends DataSource {
 
     @Override
     public CompletableFuture<Boolean> deleteVault(UUID owner, int id) {
-        return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("vaults/delete_vault.sql")
-                );
-                statement.setString(1, owner.toString());
+        this.getVaultCache().invalidate(VaultKey.of(owner, id));
+        this.getSearchSessions().invalidate(owner);
+        this.getVaultSaveQueue().discard(VaultKey.of(owner, id));
+        return this.afterPendingSaves(owner, () -> Executors.supplyAsyncWithSQLException(() -> {
+            try (Connection connection = this.connection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         this.getStatement("vaults/delete_vault.sql")
+                 )) {
+                this.setUuid(statement, 1, owner);
                 statement.setInt(2, id);
                 int rowsAffected = statement.executeUpdate();
 
+                try (PreparedStatement slotStatement = connection.prepareStatement(
+                        this.getStatement("vaults/delete_vault_slots.sql")
+                )) {
+                    this.setUuid(slotStatement, 1, owner);
+                    slotStatement.setInt(2, id);
+                    slotStatement.executeUpdate();
+                }
+                try (PreparedStatement indexStatement = connection.prepareStatement(
+                        this.getStatement("index/delete_vault_index.sql")
+                )) {
+                    this.setUuid(indexStatement, 1, owner);
+                    indexStatement.setInt(2, id);
+                    indexStatement.executeUpdate();
+                }
+
 
                 Text.debug("Attempted to delete vault: " + owner + " #" + id);
                 return rowsAffected > 0;
             }
-        }, singleThread);
+        }, singleThread));
     }
 
     @Override
     public CompletableFuture<@NotNull Integer> deleteVaults(UUID owner) {
-        return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("vaults/delete_all_vaults.sql")
-                );
-                statement.setString(1, owner.toString());
+        this.getVaultCache().invalidate(owner);
+        this.getSearchSessions().invalidate(owner);
+        this.getVaultSaveQueue().discard(owner);
+        return this.afterPendingSaves(owner, () -> Executors.supplyAsyncWithSQLException(() -> {
+            try (Connection connection = this.connection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         this.getStatement("vaults/delete_all_vaults.sql")
+                 )) {
+                this.setUuid(statement, 1, owner);
                 int rowsAffected = statement.executeUpdate();
+
+                try (PreparedStatement slotStatement = connection.prepareStatement(
+                        this.getStatement("vaults/delete_all_vault_slots.sql")
+                )) {
+                    this.setUuid(slotStatement, 1, owner);
+                    slotStatement.executeUpdate();
+                }
+                try (PreparedStatement indexStatement = connection.prepareStatement(
+                        this.getStatement("index/delete_all_vault_index.sql")
+                )) {
+                    this.setUuid(indexStatement, 1, owner);
+                    indexStatement.executeUpdate();
+                }
                 Text.debug("Deleted all vaults for owner: " + owner);
                 return rowsAffected;
             }
-        }, singleThread);
-    }
-
-    @Override
-    public CompletableFuture<@NotNull Collection<Vault>> getAllVaults() {
-        return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("vaults/select_all_vaults.sql")
-                );
-
-                ResultSet resultSet = statement.executeQuery();
-                return this.mapVaults(resultSet);
-            }
-        }, singleThread);
+        }, singleThread));
     }
 
     @Override
     public CompletableFuture<List<String>> getVaultNames(UUID owner) {
-        return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("vaults/select_vault_names.sql")
-                );
+        return this.afterPendingSaves(owner, () -> Executors.supplyAsyncWithSQLException(() -> {
+            try (Connection connection = this.readConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         this.getStatement("vaults/select_vault_names.sql")
+                 )) {
 
-                statement.setString(1, owner.toString());
+                this.setUuid(statement, 1, owner);
 
                 ResultSet resultSet = statement.executeQuery();
                 List<String> vaultNames = new ArrayList<>();
@@ -206,19 +267,18 @@ public class SQLiteDataSource extends DataSource {
                 }
                 return vaultNames;
             }
-        });
+        }));
     }
 
     @Override
-    public CompletableFuture<@NotNull Warehouse> getWarehouse(UUID owner) {
+    protected CompletableFuture<@NotNull Warehouse> loadWarehouse(UUID owner) {
         return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
+            try (Connection connection = this.readConnection();
+                 PreparedStatement warehouseStatement = connection.prepareStatement(
+                         this.getStatement("warehouses/select_warehouse.sql")
+                 )) {
 
-                PreparedStatement warehouseStatement = connection.prepareStatement(
-                        this.getStatement("warehouses/select_warehouse.sql")
-                );
-
-                warehouseStatement.setString(1, owner.toString());
+                this.setUuid(warehouseStatement, 1, owner);
 
                 ResultSet resultSet = warehouseStatement.executeQuery();
                 return this.mapWarehouse(resultSet, owner);
@@ -227,63 +287,21 @@ public class SQLiteDataSource extends DataSource {
     }
 
     @Override
-    public CompletableFuture<Void> saveWarehouse(Warehouse warehouse) {
+    protected CompletableFuture<Void> saveWarehouseChanges(Warehouse warehouse, WarehouseChanges changes) {
         return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                UUID owner = warehouse.getOwner();
-                Map<Material, Stock> map = warehouse.stock();
-
-                // Execute INSERT/UPDATE
-                try (PreparedStatement ps = connection.prepareStatement(
-                        this.getStatement("warehouses/sqlite/insert_or_update_warehouse.sql")
-                )) {
-                    for (Map.Entry<Material, Stock> entry : map.entrySet()) {
-                        ps.setString(1, owner.toString());
-                        ps.setString(2, entry.getKey().name());
-                        ps.setInt(3, entry.getValue().getAmount());
-                        ps.setLong(4, entry.getValue().getLastUpdate());
-                        ps.addBatch();
-                    }
-                    ps.executeBatch();
-                }
-
-                // Execute DELETE for removed items
-                if (map.isEmpty()) {
-                    // If map is empty, delete all rows for this owner
-                    try (PreparedStatement ps = connection.prepareStatement(
-                            this.getStatement("warehouses/delete_all_warehouse.sql")
-                    )) {
-                        ps.setString(1, owner.toString());
-                        ps.executeUpdate();
-                    }
-                } else {
-                    // Delete rows where material is NOT IN the current map
-                    String placeholders = String.join(", ", Collections.nCopies(map.size(), "?"));
-                    String deleteSql = this.getStatement("warehouses/delete_stale_warehouse.sql")
-                            .replace("(?)", "(" + placeholders + ")");
-
-                    try (PreparedStatement ps = connection.prepareStatement(deleteSql)) {
-                        ps.setString(1, owner.toString());
-                        int i = 2;
-                        for (Material m : map.keySet()) {
-                            ps.setString(i++, m.name());
-                        }
-                        ps.executeUpdate();
-                    }
-                }
-            }
+            this.writeWarehouse(warehouse, changes, "warehouses/sqlite/insert_or_update_warehouse.sql");
             return null;
         }, singleThread);
     }
 
     @Override
-    public CompletableFuture<MaltsPlayer> getMaltsPlayer(UUID uuid) {
+    protected CompletableFuture<@NotNull MaltsPlayer> loadMaltsPlayer(UUID uuid) {
         return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("players/select_player.sql")
-                );
-                statement.setString(1, uuid.toString());
+            try (Connection connection = this.readConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         this.getStatement("players/select_player.sql")
+                 )) {
+                this.setUuid(statement, 1, uuid);
                 ResultSet resultSet = statement.executeQuery();
                 return this.mapMaltsPlayer(resultSet, uuid);
             }
@@ -294,17 +312,7 @@ public class SQLiteDataSource extends DataSource {
     @Override
     public CompletableFuture<Void> saveMaltsPlayer(MaltsPlayer maltsPlayer) {
         return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("players/sqlite/insert_or_update_player.sql")
-                );
-                statement.setString(1, maltsPlayer.getUuid().toString());
-                statement.setInt(2, maltsPlayer.getMaxVaults());
-                statement.setInt(3, maltsPlayer.getMaxWarehouseStock());
-                statement.setString(4, maltsPlayer.getWarehouseMode().name());
-                statement.setString(5, maltsPlayer.getQuickReturnClickType().name());
-                statement.executeUpdate();
-            }
+            this.writeMaltsPlayer(maltsPlayer, "players/sqlite/insert_or_update_player.sql");
             return null;
         }, singleThread);
     }
@@ -312,10 +320,10 @@ public class SQLiteDataSource extends DataSource {
     @Override
     public CompletableFuture<Integer> getTotalVaultCount() {
         return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("vaults/total_vault_count.sql")
-                );
+            try (Connection connection = this.readConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         this.getStatement("vaults/total_vault_count.sql")
+                 )) {
                 ResultSet rs = statement.executeQuery();
                 if (rs.next()) {
                     return rs.getInt(1);
@@ -328,10 +336,10 @@ public class SQLiteDataSource extends DataSource {
     @Override
     public CompletableFuture<Integer> getTotalWarehouseStockCount() {
         return Executors.supplyAsyncWithSQLException(() -> {
-            try (Connection connection = this.connection()) {
-                PreparedStatement statement = connection.prepareStatement(
-                        this.getStatement("warehouses/total_warehouse_stock.sql")
-                );
+            try (Connection connection = this.readConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         this.getStatement("warehouses/total_warehouse_stock.sql")
+                 )) {
                 ResultSet rs = statement.executeQuery();
                 if (rs.next()) {
                     return rs.getInt(1);
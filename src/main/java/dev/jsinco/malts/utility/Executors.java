@@ -6,18 +6,27 @@ import org.bukkit.Bukkit;
 import org.bukkit.scheduler.BukkitTask;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public final class Executors {
 
     private static final Malts instance = Malts.getInstance();
 
+    @Nullable
+    private static volatile InstrumentedExecutor databaseExecutor;
+
     public static ScheduledTask runRepeatingAsync(long delay, long period, TimeUnit timeUnit, Consumer<ScheduledTask> consumer) {
         return Bukkit.getAsyncScheduler().runAtFixedRate(instance, consumer, delay, period, timeUnit);
     }
@@ -34,6 +43,14 @@ public final class Executors {
         return Bukkit.getAsyncScheduler().runNow(instance, consumer);
     }
 
+    /**
+     * Gets an executor which runs tasks on the plugin's async scheduler, for work which
+     * shouldn't occupy the database threads or {@link ForkJoinPool#commonPool()}.
+     */
+    public static Executor asyncExecutor() {
+        return command -> runAsync(task -> command.run());
+    }
+
     // TODO: Better logging
     public static BukkitTask runAsync(Runnable runnable) {
         return Bukkit.getScheduler().runTaskAsynchronously(instance, () -> {
@@ -57,10 +74,26 @@ public final class Executors {
 
     // CompletableFuture
 
-    // TODO: Better logging
+    /**
+     * Runs a database task on the {@link #databaseExecutor()}.
+     * If the executor's queue is full, the future completes exceptionally with a
+     * {@link RejectedExecutionException} instead of with null.
+     */
     public static <U> CompletableFuture<U> supplyAsyncWithSQLException(ExceptionUtil.ThrowingSQLExceptionWithReturn<U> supplier) {
+        return supplyAsyncWithSQLException(supplier, databaseExecutor());
+    }
+
+    // TODO: Better logging
+    public static <U> CompletableFuture<U> supplyAsyncWithSQLException(ExceptionUtil.ThrowingSQLExceptionWithReturn<U> supplier, Executor executor) {
         if (!Malts.isShutdown()) {
-            return CompletableFuture.supplyAsync(() -> ExceptionUtil.runWithSQLExceptionHandling(supplier)).exceptionally(throwable -> {
+            CompletableFuture<U> future;
+            try {
+                future = CompletableFuture.supplyAsync(() -> ExceptionUtil.runWithSQLExceptionHandling(supplier), executor);
+            } catch (RejectedExecutionException e) {
+                Text.warn(e.getMessage());
+                return CompletableFuture.failedFuture(e);
+            }
+            return future.exceptionally(throwable -> {
                 throwable.printStackTrace();
                 return null;
             });
@@ -69,15 +102,24 @@ public final class Executors {
         }
     }
 
-    // TODO: Better logging
-    public static <U> CompletableFuture<U> supplyAsyncWithSQLException(ExceptionUtil.ThrowingSQLExceptionWithReturn<U> supplier, Executor executor) {
+    /**
+     * Same as {@link #supplyAsyncWithSQLException(ExceptionUtil.ThrowingSQLExceptionWithReturn, Executor)},
+     * but the future completes exceptionally if the task fails instead of completing with null.
+     * Use this for writes whose callers need to know the data actually reached the database.
+     */
+    public static <U> CompletableFuture<U> supplyAsyncPropagatingSQLException(ExceptionUtil.ThrowingSQLExceptionWithReturn<U> supplier, Executor executor) {
         if (!Malts.isShutdown()) {
-            return CompletableFuture.supplyAsync(() -> ExceptionUtil.runWithSQLExceptionHandling(supplier), executor).exceptionally(throwable -> {
-                throwable.printStackTrace();
-                return null;
-            });
-        } else {
+            try {
+                return CompletableFuture.supplyAsync(() -> ExceptionUtil.runWithSQLExceptionHandling(supplier), executor);
+            } catch (RejectedExecutionException e) {
+                Text.warn(e.getMessage());
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        try {
             return CompletableFuture.completedFuture(ExceptionUtil.runWithSQLExceptionHandling(supplier));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
         }
     }
 
@@ -106,6 +148,30 @@ public final class Executors {
         }
     }
 
+    /**
+     * Runs a task on the main thread and completes with its result. Runs immediately
+     * if already on the main thread or if the plugin is shutting down.
+     */
+    public static <U> CompletableFuture<U> supplySync(Supplier<U> supplier) {
+        if (Bukkit.isPrimaryThread() || Malts.isShutdown()) {
+            try {
+                return CompletableFuture.completedFuture(supplier.get());
+            } catch (Throwable t) {
+                return CompletableFuture.failedFuture(t);
+            }
+        }
+
+        CompletableFuture<U> future = new CompletableFuture<>();
+        Bukkit.getScheduler().runTask(instance, () -> {
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
     public static ExecutorService newSingleThreadExecutor() {
         return new ThreadPoolExecutor(
                 1,
@@ -122,4 +188,63 @@ public final class Executors {
         );
     }
 
+    // Database
+
+    /**
+     * Gets the executor blocking database work runs on, so it never occupies
+     * {@link ForkJoinPool#commonPool()} which the rest of the server shares.
+     * Falls back to the common pool if no database executor has been started.
+     */
+    public static Executor databaseExecutor() {
+        InstrumentedExecutor executor = databaseExecutor;
+        return executor != null && !executor.isShutdown() ? executor : ForkJoinPool.commonPool();
+    }
+
+    @Nullable
+    public static InstrumentedExecutor getDatabaseExecutor() {
+        return databaseExecutor;
+    }
+
+    /**
+     * Starts the database executor, replacing any previous one.
+     *
+     * @param threads how many tasks may run at once, should match the connection pool size
+     * @param queueCapacity how many tasks may wait before new ones are rejected
+     * @param virtualThreads run tasks on virtual threads instead of platform threads
+     * @return the new executor
+     */
+    public static InstrumentedExecutor startDatabaseExecutor(int threads, int queueCapacity, boolean virtualThreads) {
+        ThreadFactory threadFactory;
+        if (virtualThreads) {
+            threadFactory = Thread.ofVirtual().name("Malts-Database-", 0).factory();
+        } else {
+            AtomicInteger count = new AtomicInteger();
+            threadFactory = runnable -> {
+                Thread thread = new Thread(runnable, "Malts-Database-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                thread.setContextClassLoader(Malts.class.getClassLoader());
+                return thread;
+            };
+        }
+
+        InstrumentedExecutor executor = new InstrumentedExecutor("Malts-Database", Math.max(1, threads),
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), threadFactory);
+        InstrumentedExecutor previous = databaseExecutor;
+        databaseExecutor = executor;
+        if (previous != null) {
+            previous.shutdown();
+        }
+        return executor;
+    }
+
+    /**
+     * Stops accepting new database tasks. Tasks already queued still run.
+     */
+    public static void shutdownDatabaseExecutor() {
+        InstrumentedExecutor executor = databaseExecutor;
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
 }
@@ -0,0 +1,106 @@
+package dev.jsinco.malts.utility;
+
+import dev.jsinco.malts.Malts;
+import lombok.Getter;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed size thread pool which records how long tasks wait in its queue.
+ * Once the queue is full, new tasks are rejected with a {@link RejectedExecutionException}
+ * rather than run on the thread submitting them, which is usually the main thread.
+ *
+ * @see Executors#databaseExecutor()
+ */
+public class InstrumentedExecutor extends ThreadPoolExecutor {
+
+    @Getter
+    private final String name;
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder rejected = new LongAdder();
+
+    public InstrumentedExecutor(String name, int threads, BlockingQueue<Runnable> queue, ThreadFactory threadFactory) {
+        super(threads, threads, 0L, TimeUnit.MILLISECONDS, queue, threadFactory);
+        this.name = name;
+        this.setRejectedExecutionHandler(new CountingAbortPolicy());
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(new TimedTask(command, System.nanoTime()));
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable runnable) {
+        super.beforeExecute(thread, runnable);
+        if (runnable instanceof TimedTask task) {
+            long waited = System.nanoTime() - task.submittedAt();
+            executed.increment();
+            totalWaitNanos.add(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+        }
+    }
+
+    public int getQueueDepth() {
+        return this.getQueue().size();
+    }
+
+    public long getExecutedCount() {
+        return executed.sum();
+    }
+
+    /**
+     * @return how many tasks were rejected because the queue was full
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = executed.sum();
+        return count == 0 ? 0 : totalWaitNanos.sum() / (double) count / 1_000_000;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000D;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{threads=%d, active=%d, queued=%d, executed=%d, rejected=%d, avgWait=%.2fms, maxWait=%.2fms}",
+                name, this.getPoolSize(), this.getActiveCount(), this.getQueueDepth(),
+                this.getExecutedCount(), this.getRejectedCount(), this.getAverageWaitMillis(), this.getMaxWaitMillis());
+    }
+
+    private record TimedTask(Runnable delegate, long submittedAt) implements Runnable {
+        @Override
+        public void run() {
+            delegate.run();
+        }
+    }
+
+    /**
+     * Like {@link ThreadPoolExecutor.AbortPolicy}, except tasks submitted after this executor
+     * was shut down while the plugin is disabling still run, so the final saves aren't dropped.
+     */
+    private class CountingAbortPolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown() && Malts.isShutdown()) {
+                runnable.run();
+                return;
+            }
+            rejected.increment();
+            throw new RejectedExecutionException("Task rejected from " + name + ", " + executor.getQueue().size() + " task(s) queued");
+        }
+    }
+}
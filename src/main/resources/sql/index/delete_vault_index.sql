@@ -0,0 +1,3 @@
+DELETE
+FROM malts_vault_index
+WHERE owner = ? AND id = ?;
\ No newline at end of file
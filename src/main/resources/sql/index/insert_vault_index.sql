@@ -0,0 +1,2 @@
+INSERT INTO malts_vault_index (owner, id, slot, search_text)
+VALUES (?, ?, ?, ?);
\ No newline at end of file
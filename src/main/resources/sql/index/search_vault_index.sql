@@ -0,0 +1,4 @@
+SELECT id, slot
+FROM malts_vault_index
+WHERE owner = ? AND (search_text LIKE ? ESCAPE '!' OR search_text LIKE ? ESCAPE '!')
+ORDER BY id, slot;
\ No newline at end of file
@@ -0,0 +1,2 @@
+INSERT IGNORE INTO malts_materials (name)
+VALUES (?);
\ No newline at end of file
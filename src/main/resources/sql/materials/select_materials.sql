@@ -0,0 +1 @@
+SELECT id, name FROM malts_materials;
\ No newline at end of file
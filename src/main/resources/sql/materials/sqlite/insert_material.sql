@@ -0,0 +1,2 @@
+INSERT OR IGNORE INTO malts_materials (name)
+VALUES (?);
\ No newline at end of file
@@ -0,0 +1,2 @@
+INSERT INTO malts_meta (name, value)
+VALUES (?, ?);
\ No newline at end of file
@@ -0,0 +1,4 @@
+INSERT INTO malts_meta (name, value)
+VALUES (?, ?)
+ON DUPLICATE KEY UPDATE
+   value = VALUES(value);
\ No newline at end of file
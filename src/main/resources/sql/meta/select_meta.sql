@@ -0,0 +1,2 @@
+SELECT value FROM malts_meta
+WHERE name = ?;
\ No newline at end of file
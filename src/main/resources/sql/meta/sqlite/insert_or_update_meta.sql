@@ -0,0 +1,4 @@
+INSERT INTO malts_meta (name, value)
+VALUES (?, ?)
+    ON CONFLICT(name) DO UPDATE SET
+    value = excluded.value;
\ No newline at end of file
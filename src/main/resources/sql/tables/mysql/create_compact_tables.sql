@@ -0,0 +1,55 @@
+CREATE TABLE IF NOT EXISTS malts_meta(
+    name VARCHAR(64) NOT NULL PRIMARY KEY,
+    value TEXT
+);
+
+CREATE TABLE IF NOT EXISTS malts_materials(
+    id SMALLINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(64) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS malts_vaults(
+    owner BINARY(16) NOT NULL,
+    id INTEGER NOT NULL,
+    inventory MEDIUMTEXT NOT NULL,
+    inventory_data MEDIUMBLOB,
+    custom_name TEXT,
+    icon TEXT,
+    trusted_players TEXT,
+    PRIMARY KEY (owner, id)
+);
+
+CREATE TABLE IF NOT EXISTS malts_players(
+    uuid BINARY(16) NOT NULL PRIMARY KEY,
+    max_vaults INTEGER NOT NULL,
+    max_warehouse_stock INTEGER NOT NULL,
+    warehouse_mode TEXT,
+    quick_return_click_type TEXT
+);
+
+CREATE TABLE IF NOT EXISTS malts_warehouses(
+    owner BINARY(16) NOT NULL,
+    material SMALLINT NOT NULL,
+    quantity INTEGER NOT NULL,
+    last_update BIGINT NOT NULL,
+    PRIMARY KEY (owner, material),
+    FOREIGN KEY (owner) REFERENCES malts_players(uuid)
+);
+
+CREATE INDEX malts_warehouses_material ON malts_warehouses(material, owner);
+
+CREATE TABLE IF NOT EXISTS malts_vault_slots(
+    owner BINARY(16) NOT NULL,
+    id INTEGER NOT NULL,
+    slot INTEGER NOT NULL,
+    item MEDIUMBLOB,
+    PRIMARY KEY (owner, id, slot)
+);
+
+CREATE TABLE IF NOT EXISTS malts_vault_index(
+    owner BINARY(16) NOT NULL,
+    id INTEGER NOT NULL,
+    slot INTEGER NOT NULL,
+    search_text TEXT NOT NULL,
+    PRIMARY KEY (owner, id, slot)
+);
\ No newline at end of file
@@ -1,7 +1,13 @@
+CREATE TABLE IF NOT EXISTS malts_meta(
+    name VARCHAR(64) NOT NULL PRIMARY KEY,
+    value TEXT
+);
+
 CREATE TABLE IF NOT EXISTS malts_vaults(
     owner VARCHAR(36) NOT NULL,
     id INTEGER NOT NULL,
     inventory MEDIUMTEXT NOT NULL,
+    inventory_data MEDIUMBLOB,
     custom_name TEXT,
     icon TEXT,
     trusted_players TEXT,
@@ -25,5 +31,24 @@ CREATE TABLE IF NOT EXISTS malts_warehouses(
     FOREIGN KEY (owner) REFERENCES malts_players(uuid)
 );
 
+CREATE INDEX malts_warehouses_material ON malts_warehouses(material, owner);
+
+CREATE TABLE IF NOT EXISTS malts_vault_slots(
+    owner VARCHAR(36) NOT NULL,
+    id INTEGER NOT NULL,
+    slot INTEGER NOT NULL,
+    item MEDIUMBLOB,
+    PRIMARY KEY (owner, id, slot)
+);
+
+CREATE TABLE IF NOT EXISTS malts_vault_index(
+    owner VARCHAR(36) NOT NULL,
+    id INTEGER NOT NULL,
+    slot INTEGER NOT NULL,
+    search_text TEXT NOT NULL,
+    PRIMARY KEY (owner, id, slot)
+);
+
 -- Migration code
 ALTER TABLE malts_players ADD COLUMN quick_return_click_type TEXT;
+ALTER TABLE malts_vaults ADD COLUMN inventory_data MEDIUMBLOB;
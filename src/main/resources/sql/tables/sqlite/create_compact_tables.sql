@@ -0,0 +1,56 @@
+CREATE TABLE IF NOT EXISTS malts_meta(
+    name VARCHAR(64) NOT NULL PRIMARY KEY,
+    value TEXT
+);
+
+CREATE TABLE IF NOT EXISTS malts_materials(
+    id INTEGER PRIMARY KEY,
+    name VARCHAR(64) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS malts_vaults(
+    owner BLOB NOT NULL,
+    id INTEGER NOT NULL,
+    inventory TEXT NOT NULL,
+    inventory_data BLOB,
+    custom_name TEXT,
+    icon TEXT,
+    trusted_players TEXT,
+    PRIMARY KEY (owner, id)
+);
+
+CREATE TABLE IF NOT EXISTS malts_players(
+    uuid BLOB NOT NULL PRIMARY KEY,
+    max_vaults INTEGER NOT NULL,
+    max_warehouse_stock INTEGER NOT NULL,
+    warehouse_mode TEXT,
+    quick_return_click_type TEXT
+);
+
+CREATE TABLE IF NOT EXISTS malts_warehouses(
+    owner BLOB NOT NULL,
+    material INTEGER NOT NULL,
+    quantity INTEGER NOT NULL,
+    last_update BIGINT NOT NULL,
+    PRIMARY KEY (owner, material),
+    FOREIGN KEY (owner) REFERENCES malts_players(uuid)
+);
+
+-- Named apart from the text index, which SQLite keeps on the table renamed by a key migration
+CREATE INDEX IF NOT EXISTS malts_warehouses_material_id ON malts_warehouses(material, owner);
+
+CREATE TABLE IF NOT EXISTS malts_vault_slots(
+    owner BLOB NOT NULL,
+    id INTEGER NOT NULL,
+    slot INTEGER NOT NULL,
+    item BLOB,
+    PRIMARY KEY (owner, id, slot)
+);
+
+CREATE TABLE IF NOT EXISTS malts_vault_index(
+    owner BLOB NOT NULL,
+    id INTEGER NOT NULL,
+    slot INTEGER NOT NULL,
+    search_text TEXT NOT NULL,
+    PRIMARY KEY (owner, id, slot)
+);
\ No newline at end of file
@@ -1,8 +1,9 @@
 INSERT INTO malts_vaults(
-    owner, id, inventory, custom_name, icon, trusted_players
-) VALUES (?, ?, ?, ?, ?, ?)
+    owner, id, inventory, inventory_data, custom_name, icon, trusted_players
+) VALUES (?, ?, ?, ?, ?, ?, ?)
 ON DUPLICATE KEY UPDATE
    inventory = VALUES(inventory),
+   inventory_data = VALUES(inventory_data),
    custom_name = VALUES(custom_name),
    icon = VALUES(icon),
    trusted_players = VALUES(trusted_players);
\ No newline at end of file
@@ -0,0 +1,5 @@
+INSERT INTO malts_vault_slots(
+    owner, id, slot, item
+) VALUES (?, ?, ?, ?)
+ON DUPLICATE KEY UPDATE
+   item = VALUES(item);
\ No newline at end of file
@@ -0,0 +1,4 @@
+SELECT owner, id, inventory, inventory_data
+FROM malts_vaults
+ORDER BY owner, id
+LIMIT ?;
\ No newline at end of file
@@ -0,0 +1,4 @@
+SELECT 1
+FROM malts_vaults
+WHERE owner = ?
+LIMIT 1;
\ No newline at end of file
@@ -1,3 +1,3 @@
-SELECT *
+SELECT id, custom_name, icon, trusted_players
 FROM malts_vaults
 WHERE owner = ?;
\ No newline at end of file
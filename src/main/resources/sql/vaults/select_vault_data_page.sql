@@ -0,0 +1,5 @@
+SELECT owner, id, inventory, inventory_data
+FROM malts_vaults
+WHERE owner > ? OR (owner = ? AND id > ?)
+ORDER BY owner, id
+LIMIT ?;
\ No newline at end of file
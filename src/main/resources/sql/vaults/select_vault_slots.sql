@@ -0,0 +1,3 @@
+SELECT slot, item
+FROM malts_vault_slots
+WHERE owner = ? AND id = ?;
\ No newline at end of file
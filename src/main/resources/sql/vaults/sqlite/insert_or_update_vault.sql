@@ -1,8 +1,9 @@
 INSERT INTO malts_vaults(
-    owner, id, inventory, custom_name, icon, trusted_players
-) VALUES (?, ?, ?, ?, ?, ?)
+    owner, id, inventory, inventory_data, custom_name, icon, trusted_players
+) VALUES (?, ?, ?, ?, ?, ?, ?)
     ON CONFLICT(owner, id) DO UPDATE SET
     inventory = excluded.inventory,
+    inventory_data = excluded.inventory_data,
     custom_name = excluded.custom_name,
     icon = excluded.icon,
     trusted_players = excluded.trusted_players;
\ No newline at end of file
@@ -0,0 +1,5 @@
+INSERT INTO malts_vault_slots(
+    owner, id, slot, item
+) VALUES (?, ?, ?, ?)
+    ON CONFLICT(owner, id, slot) DO UPDATE SET
+    item = excluded.item;
\ No newline at end of file
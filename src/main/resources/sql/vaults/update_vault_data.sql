@@ -0,0 +1,3 @@
+UPDATE malts_vaults
+SET inventory_data = ?
+WHERE owner = ? AND id = ? AND inventory_data = ?;
\ No newline at end of file
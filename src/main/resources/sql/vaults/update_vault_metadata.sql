@@ -0,0 +1,3 @@
+UPDATE malts_vaults
+SET custom_name = ?, icon = ?, trusted_players = ?
+WHERE owner = ? AND id = ?;
\ No newline at end of file
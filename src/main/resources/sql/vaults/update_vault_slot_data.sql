@@ -0,0 +1,3 @@
+UPDATE malts_vault_slots
+SET item = ?
+WHERE owner = ? AND id = ? AND slot = ? AND item = ?;
\ No newline at end of file
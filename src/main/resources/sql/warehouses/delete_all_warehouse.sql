@@ -1,2 +0,0 @@
-DELETE FROM malts_warehouses
-WHERE owner = ?;
\ No newline at end of file
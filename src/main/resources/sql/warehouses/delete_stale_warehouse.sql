@@ -1,3 +0,0 @@
-DELETE FROM malts_warehouses
-WHERE owner = ?
-  AND material NOT IN (?);
\ No newline at end of file
@@ -0,0 +1,2 @@
+DELETE FROM malts_warehouses
+WHERE owner = ? AND material = ?;
\ No newline at end of file
@@ -0,0 +1,5 @@
+SELECT owner, quantity
+FROM malts_warehouses
+WHERE material = ? AND quantity > 0 AND owner > ?
+ORDER BY owner
+LIMIT ?;
\ No newline at end of file
@@ -0,0 +1,172 @@
+package dev.jsinco.malts.obj;
+
+import dev.jsinco.malts.Malts;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.MockBukkitExtension;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockBukkitExtension.class)
+class VaultDeltaTest {
+
+    private static final int THRESHOLD = 3;
+
+    UUID owner;
+
+    @BeforeEach
+    void setUp() {
+        MockBukkit.load(Malts.class);
+        this.owner = UUID.randomUUID();
+    }
+
+    @Test
+    void testFirstSaveIsCompact() {
+        Vault vault = new Vault(owner, 1);
+        vault.getInventory().setItem(0, new ItemStack(Material.DIAMOND));
+
+        VaultChanges changes = vault.changesSinceSave(vault.snapshot(), THRESHOLD);
+
+        assertTrue(changes.compact(), "A vault without a stored base should be written in full");
+        assertFalse(vault.hasSavedContents());
+    }
+
+    @Test
+    void testChangedSlotsAfterSave() {
+        Vault vault = new Vault(owner, 1);
+        save(vault);
+
+        vault.getInventory().setItem(4, new ItemStack(Material.DIAMOND));
+        VaultChanges changes = save(vault);
+        assertFalse(changes.compact());
+        assertEquals(List.of(4), changes.changedSlots());
+
+        vault.getInventory().setItem(7, new ItemStack(Material.EMERALD));
+        changes = save(vault);
+        assertFalse(changes.compact());
+        assertEquals(List.of(7), changes.changedSlots(), "Only slots changed since the last save should be written");
+        assertTrue(vault.isUnchangedSinceSave());
+    }
+
+    @Test
+    void testCompactsOverThreshold() {
+        Vault vault = new Vault(owner, 1);
+        save(vault);
+
+        for (int slot = 0; slot < THRESHOLD; slot++) {
+            vault.getInventory().setItem(slot, new ItemStack(Material.DIAMOND));
+            assertFalse(save(vault).compact());
+        }
+
+        vault.getInventory().setItem(THRESHOLD, new ItemStack(Material.DIAMOND));
+        assertTrue(save(vault).compact(), "Deltas from earlier saves should count towards the threshold");
+
+        vault.getInventory().setItem(THRESHOLD + 1, new ItemStack(Material.DIAMOND));
+        VaultChanges changes = save(vault);
+        assertFalse(changes.compact(), "Compacting should clear the vault's deltas");
+        assertEquals(List.of(THRESHOLD + 1), changes.changedSlots());
+    }
+
+    @Test
+    void testRewritingSameSlotDoesNotGrowDeltas() {
+        Vault vault = new Vault(owner, 1);
+        save(vault);
+
+        for (int amount = 1; amount <= THRESHOLD + 2; amount++) {
+            vault.getInventory().setItem(0, new ItemStack(Material.DIAMOND, amount));
+            assertFalse(save(vault).compact(), "The same slot should only count once");
+        }
+    }
+
+    @Test
+    void testDetectsChangesToSameTypeAndAmount() {
+        Vault vault = new Vault(owner, 1);
+        vault.getInventory().setItem(0, new ItemStack(Material.DIAMOND_SWORD));
+        save(vault);
+        assertTrue(vault.isUnchangedSinceSave());
+
+        ItemStack renamed = new ItemStack(Material.DIAMOND_SWORD);
+        renamed.editMeta(meta -> meta.displayName(Component.text("Renamed")));
+        vault.getInventory().setItem(0, renamed);
+
+        assertFalse(vault.isUnchangedSinceSave(), "Renaming an item should count as a change");
+        assertEquals(List.of(0), save(vault).changedSlots());
+    }
+
+    @Test
+    void testLoadedDeltasApplyOnBase() {
+        Vault stored = new Vault(owner, 1);
+        stored.getInventory().setItem(0, new ItemStack(Material.DIAMOND));
+        stored.getInventory().setItem(2, new ItemStack(Material.GOLD_INGOT));
+
+        Map<Integer, ItemStack> deltas = new HashMap<>();
+        deltas.put(0, new ItemStack(Material.EMERALD));
+        deltas.put(2, null);
+        Vault vault = new Vault(owner, 1, stored.getInventory().getContents());
+        vault.loadSlotDeltas(deltas);
+
+        assertEquals(new ItemStack(Material.EMERALD), vault.getInventory().getItem(0));
+        assertNull(vault.getInventory().getItem(2), "A null delta should empty the slot");
+        assertTrue(vault.hasSavedContents());
+        assertTrue(vault.isUnchangedSinceSave(), "A freshly loaded vault should match storage");
+    }
+
+    @Test
+    void testLoadedDeltasCountTowardsThreshold() {
+        Map<Integer, ItemStack> deltas = new HashMap<>();
+        for (int slot = 0; slot < THRESHOLD; slot++) {
+            deltas.put(slot, new ItemStack(Material.DIAMOND));
+        }
+        Vault vault = new Vault(owner, 1, new ItemStack[new Vault(owner, 1).getInventory().getSize()]);
+        vault.loadSlotDeltas(deltas);
+
+        vault.getInventory().setItem(THRESHOLD, new ItemStack(Material.DIAMOND));
+        assertTrue(vault.changesSinceSave(vault.snapshot(), THRESHOLD).compact());
+    }
+
+    @Test
+    void testDeltaRoundTrip() {
+        Vault vault = new Vault(owner, 1);
+        vault.getInventory().setItem(1, new ItemStack(Material.DIAMOND, 16));
+        ItemStack[] base = save(vault).contents().clone();
+
+        // What storage holds on top of the base, replaced slot by slot like the delta rows
+        Map<Integer, ItemStack> rows = new HashMap<>();
+        vault.getInventory().setItem(1, null);
+        vault.getInventory().setItem(5, new ItemStack(Material.EMERALD, 3));
+        recordDeltas(save(vault), rows);
+        vault.getInventory().setItem(5, new ItemStack(Material.EMERALD, 4));
+        vault.getInventory().setItem(8, new ItemStack(Material.GOLD_INGOT));
+        recordDeltas(save(vault), rows);
+
+        Vault reloaded = new Vault(owner, 1, base);
+        reloaded.loadSlotDeltas(rows);
+
+        assertArrayEquals(vault.getInventory().getContents(), reloaded.getInventory().getContents());
+        assertTrue(reloaded.isUnchangedSinceSave());
+    }
+
+    private static VaultChanges save(Vault vault) {
+        VaultSnapshot snapshot = vault.snapshot();
+        VaultChanges changes = vault.changesSinceSave(snapshot, THRESHOLD);
+        vault.markSaved(snapshot, changes);
+        return changes;
+    }
+
+    private static void recordDeltas(VaultChanges changes, Map<Integer, ItemStack> rows) {
+        assertFalse(changes.compact());
+        for (int slot : changes.changedSlots()) {
+            rows.put(slot, changes.contents()[slot]);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package dev.jsinco.malts.obj;
+
+import dev.jsinco.malts.Malts;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.MockBukkitExtension;
+import org.mockbukkit.mockbukkit.MockBukkitInject;
+import org.mockbukkit.mockbukkit.ServerMock;
+import org.mockbukkit.mockbukkit.entity.PlayerMock;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockBukkitExtension.class)
+class VaultSyncTest {
+
+    private static final ItemStack SHARED = new ItemStack(Material.OAK_LOG, 16);
+
+    @MockBukkitInject
+    ServerMock serverMock;
+    PlayerMock firstViewer;
+    PlayerMock secondViewer;
+    // Two instances of the same vault, each open for its own viewer
+    Vault first;
+    Vault second;
+
+    @BeforeEach
+    void setUp() {
+        MockBukkit.load(Malts.class);
+        this.firstViewer = this.serverMock.addPlayer();
+        this.secondViewer = this.serverMock.addPlayer();
+        this.first = new Vault(firstViewer.getUniqueId(), 1);
+        this.second = new Vault(firstViewer.getUniqueId(), 1);
+        for (Vault vault : List.of(first, second)) {
+            vault.getInventory().setItem(8, SHARED);
+        }
+        open(firstViewer, first);
+        open(secondViewer, second);
+    }
+
+    @Test
+    void testCopiesChangesToOtherInstance() {
+        first.getInventory().setItem(0, new ItemStack(Material.DIAMOND));
+        first.getInventory().setItem(8, null);
+        first.update(firstViewer);
+        serverMock.getScheduler().performOneTick();
+
+        assertEquals(new ItemStack(Material.DIAMOND), second.getInventory().getItem(0));
+        assertNull(second.getInventory().getItem(8));
+    }
+
+    @Test
+    void testMergesSlotsChangedByBothInstances() {
+        first.getInventory().setItem(0, new ItemStack(Material.DIAMOND));
+        first.update(firstViewer);
+        second.getInventory().setItem(1, new ItemStack(Material.EMERALD));
+        second.getInventory().setItem(8, null);
+        second.update(secondViewer);
+        serverMock.getScheduler().performOneTick();
+
+        for (Vault vault : List.of(first, second)) {
+            assertEquals(new ItemStack(Material.DIAMOND), vault.getInventory().getItem(0), "The first instance's change should be kept");
+            assertEquals(new ItemStack(Material.EMERALD), vault.getInventory().getItem(1), "The second instance's change should be kept");
+            assertNull(vault.getInventory().getItem(8));
+        }
+    }
+
+    @Test
+    void testLaterChangeWinsSameSlot() {
+        first.getInventory().setItem(0, new ItemStack(Material.DIAMOND));
+        first.update(firstViewer);
+        second.getInventory().setItem(0, new ItemStack(Material.EMERALD));
+        second.update(secondViewer);
+        serverMock.getScheduler().performOneTick();
+
+        assertEquals(new ItemStack(Material.EMERALD), first.getInventory().getItem(0));
+        assertEquals(new ItemStack(Material.EMERALD), second.getInventory().getItem(0));
+        assertEquals(SHARED, first.getInventory().getItem(8));
+    }
+
+    private static void open(PlayerMock player, Vault vault) {
+        player.openInventory(vault.getInventory());
+        VaultViewers.add(vault.getKey(), player);
+        VaultSync.track(vault);
+    }
+}
@@ -0,0 +1,100 @@
+package dev.jsinco.malts.storage;
+
+import dev.jsinco.malts.obj.CachedObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ObjectCacheTest {
+
+    @Test
+    void testSeparatesObjectsByType() {
+        ObjectCache cache = new ObjectCache();
+        UUID uuid = UUID.randomUUID();
+        FirstType first = new FirstType(uuid);
+        SecondType second = new SecondType(uuid);
+
+        cache.putIfAbsent(first);
+        cache.putIfAbsent(second);
+
+        assertSame(first, cache.get(uuid, FirstType.class));
+        assertSame(second, cache.get(uuid, SecondType.class));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testPutIfAbsentKeepsExistingInstance() {
+        ObjectCache cache = new ObjectCache();
+        UUID uuid = UUID.randomUUID();
+        FirstType original = new FirstType(uuid);
+        FirstType duplicate = new FirstType(uuid);
+
+        assertSame(original, cache.putIfAbsent(original));
+        assertSame(original, cache.putIfAbsent(duplicate));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testRemoveOnlyRemovesSameInstance() {
+        ObjectCache cache = new ObjectCache();
+        UUID uuid = UUID.randomUUID();
+        FirstType original = new FirstType(uuid);
+        cache.putIfAbsent(original);
+
+        assertFalse(cache.remove(new FirstType(uuid)));
+        assertSame(original, cache.get(uuid, FirstType.class));
+        assertTrue(cache.remove(original));
+        assertNull(cache.get(uuid, FirstType.class));
+    }
+
+    @Test
+    void testToStringOnlyCountsObjects() {
+        ObjectCache cache = new ObjectCache();
+        FirstType first = new FirstType(UUID.randomUUID());
+        cache.putIfAbsent(first);
+        cache.putIfAbsent(new FirstType(UUID.randomUUID()));
+
+        assertEquals("ObjectCache{FirstType=2}", cache.toString());
+        assertFalse(cache.toString().contains(first.getUuid().toString()));
+    }
+
+    private static class FirstType implements CachedObject {
+        private final UUID uuid;
+        private Long expire;
+
+        FirstType(UUID uuid) {
+            this.uuid = uuid;
+        }
+
+        @Override
+        public @NotNull UUID getUuid() {
+            return uuid;
+        }
+
+        @Override
+        public @Nullable Long getExpire() {
+            return expire;
+        }
+
+        @Override
+        public void setExpire(@Nullable Long expire) {
+            this.expire = expire;
+        }
+
+        @Override
+        public @NotNull CompletableFuture<Void> save(DataSource dataSource) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private static class SecondType extends FirstType {
+        SecondType(UUID uuid) {
+            super(uuid);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package dev.jsinco.malts.storage;
+
+import dev.jsinco.malts.obj.VaultSlot;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchSessionsTest {
+
+    private static final List<VaultSlot> MATCHES = List.of(new VaultSlot(1, 0), new VaultSlot(1, 5), new VaultSlot(3, 12));
+
+    @Test
+    void testReturnsMatchesForSameSearch() {
+        SearchSessions sessions = new SearchSessions(1, TimeUnit.MINUTES);
+        UUID owner = UUID.randomUUID();
+
+        sessions.put("sender", owner, "diamond", MATCHES, sessions.startSearch());
+
+        assertEquals(MATCHES, sessions.get("sender", owner, "diamond"));
+        assertNull(sessions.get("sender", owner, "gold"), "Another query has to search again");
+        assertNull(sessions.get("sender", UUID.randomUUID(), "diamond"), "Another player has to search again");
+        assertNull(sessions.get("other", owner, "diamond"), "Sessions are per sender");
+    }
+
+    @Test
+    void testInvalidateDropsSessionsOfOwner() {
+        SearchSessions sessions = new SearchSessions(1, TimeUnit.MINUTES);
+        UUID owner = UUID.randomUUID();
+        UUID otherOwner = UUID.randomUUID();
+
+        sessions.put("first", owner, "diamond", MATCHES, sessions.startSearch());
+        sessions.put("second", otherOwner, "diamond", MATCHES, sessions.startSearch());
+        sessions.invalidate(owner);
+
+        assertNull(sessions.get("first", owner, "diamond"));
+        assertEquals(MATCHES, sessions.get("second", otherOwner, "diamond"));
+    }
+
+    @Test
+    void testSearchRunningDuringInvalidateIsNotKept() {
+        SearchSessions sessions = new SearchSessions(1, TimeUnit.MINUTES);
+        UUID owner = UUID.randomUUID();
+
+        long startedAt = sessions.startSearch();
+        sessions.invalidate(owner);
+        sessions.put("sender", owner, "diamond", MATCHES, startedAt);
+
+        assertNull(sessions.get("sender", owner, "diamond"));
+    }
+
+    @Test
+    void testExpiredSessionsAreDropped() {
+        SearchSessions sessions = new SearchSessions(0, TimeUnit.MILLISECONDS);
+        UUID owner = UUID.randomUUID();
+
+        sessions.put("sender", owner, "diamond", MATCHES, sessions.startSearch() - 1);
+        sessions.expire();
+
+        assertEquals(0, sessions.size());
+        assertNull(sessions.get("sender", owner, "diamond"));
+    }
+}
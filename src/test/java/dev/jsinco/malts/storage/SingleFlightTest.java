@@ -0,0 +1,108 @@
+package dev.jsinco.malts.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    void testCoalescesLoadsOfSameKey() {
+        SingleFlight singleFlight = new SingleFlight();
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        AtomicInteger loads = new AtomicInteger();
+        UUID owner = UUID.randomUUID();
+
+        CompletableFuture<Object> first = singleFlight.load(new Key(owner, 1, false), () -> {
+            loads.incrementAndGet();
+            return load;
+        });
+        CompletableFuture<Object> second = singleFlight.load(new Key(owner, 1, false), () -> {
+            loads.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+
+        Object loaded = new Object();
+        load.complete(loaded);
+
+        assertEquals(1, loads.get(), "Only the first caller should start a load");
+        assertSame(loaded, first.join());
+        assertSame(loaded, second.join(), "Both callers should get the same object");
+        assertEquals(1, singleFlight.getCoalesced());
+        assertEquals(0, singleFlight.size(), "The key should be released once loaded");
+    }
+
+    @Test
+    void testSeparatesDifferentKeys() {
+        SingleFlight singleFlight = new SingleFlight();
+        AtomicInteger loads = new AtomicInteger();
+        UUID owner = UUID.randomUUID();
+
+        singleFlight.load(new Key(owner, 1, false), () -> pending(loads));
+        singleFlight.load(new Key(owner, 2, false), () -> pending(loads));
+        singleFlight.load(new Key(owner, 1, true), () -> pending(loads));
+        singleFlight.load(new Key(UUID.randomUUID(), 1, false), () -> pending(loads));
+
+        assertEquals(4, loads.get(), "Keys which differ in any part should load separately");
+        assertEquals(4, singleFlight.size());
+        assertEquals(0, singleFlight.getCoalesced());
+    }
+
+    @Test
+    void testLoadsAgainOnceCompleted() {
+        SingleFlight singleFlight = new SingleFlight();
+        AtomicInteger loads = new AtomicInteger();
+        Key key = new Key(UUID.randomUUID(), 1, false);
+
+        singleFlight.load(key, () -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture(new Object());
+        }).join();
+        singleFlight.load(key, () -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture(new Object());
+        }).join();
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testCancellingOneCallerDoesNotAffectOthers() {
+        SingleFlight singleFlight = new SingleFlight();
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        Key key = new Key(UUID.randomUUID(), 1, false);
+
+        CompletableFuture<Object> first = singleFlight.load(key, () -> load);
+        CompletableFuture<Object> second = singleFlight.load(key, () -> load);
+        first.cancel(false);
+
+        Object loaded = new Object();
+        load.complete(loaded);
+        assertSame(loaded, second.join());
+    }
+
+    @Test
+    void testFailedLoadReleasesKey() {
+        SingleFlight singleFlight = new SingleFlight();
+        Key key = new Key(UUID.randomUUID(), 1, false);
+
+        CompletableFuture<Object> failed = singleFlight.load(key, () -> {
+            throw new IllegalStateException("Database is down");
+        });
+
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(0, singleFlight.size());
+    }
+
+    private static CompletableFuture<Object> pending(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return new CompletableFuture<>();
+    }
+
+    private record Key(UUID owner, int id, boolean createIfNull) {
+    }
+}
@@ -0,0 +1,164 @@
+package dev.jsinco.malts.storage;
+
+import dev.jsinco.malts.Malts;
+import dev.jsinco.malts.obj.Vault;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.MockBukkitExtension;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockBukkitExtension.class)
+class VaultCacheTest {
+
+    // Room for two vaults of VAULT_BYTES but not three
+    private static final int VAULT_BYTES = 400;
+    private static final long MAX_WEIGHT = 1_000;
+
+    UUID owner;
+
+    @BeforeEach
+    void setUp() {
+        MockBukkit.load(Malts.class);
+        this.owner = UUID.randomUUID();
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        VaultCache cache = new VaultCache(MAX_WEIGHT);
+        Vault first = vault(1);
+        Vault second = vault(2);
+        Vault third = vault(3);
+
+        cache.put(first);
+        cache.put(second);
+        cache.put(third);
+
+        assertNull(cache.get(first.getKey()), "The oldest vault should be evicted");
+        assertSame(second, cache.get(second.getKey()));
+        assertSame(third, cache.get(third.getKey()));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertTrue(cache.getWeight() <= MAX_WEIGHT);
+    }
+
+    @Test
+    void testLookupRefreshesRecency() {
+        VaultCache cache = new VaultCache(MAX_WEIGHT);
+        Vault first = vault(1);
+        Vault second = vault(2);
+        Vault third = vault(3);
+
+        cache.put(first);
+        cache.put(second);
+        cache.get(first.getKey());
+        cache.put(third);
+
+        assertSame(first, cache.get(first.getKey()), "A vault that was just looked up should stay cached");
+        assertNull(cache.get(second.getKey()), "The least recently used vault should be evicted");
+    }
+
+    @Test
+    void testKeepsNewestVaultOverLimit() {
+        VaultCache cache = new VaultCache(MAX_WEIGHT);
+        Vault large = vault(1);
+        large.setStoredBytes((int) MAX_WEIGHT * 2);
+
+        cache.put(vault(2));
+        cache.put(large);
+
+        assertSame(large, cache.get(large.getKey()), "The vault that was just added is never evicted");
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testPutIfAbsentKeepsCachedInstance() {
+        VaultCache cache = new VaultCache(MAX_WEIGHT);
+        Vault cached = vault(1);
+        Vault reloaded = vault(1);
+
+        cache.put(cached);
+
+        assertSame(cached, cache.putIfAbsent(reloaded));
+        assertSame(cached, cache.get(cached.getKey()));
+    }
+
+    @Test
+    void testPinnedVaultIsNeverEvicted() {
+        VaultCache cache = new VaultCache(MAX_WEIGHT);
+        Vault open = vault(1);
+
+        cache.put(open);
+        assertSame(open, cache.pin(open));
+        cache.put(vault(2));
+        cache.put(vault(3));
+        cache.put(vault(4));
+
+        assertSame(open, cache.get(open.getKey()), "A pinned vault should outlive eviction");
+        assertSame(open, cache.getPinned(open.getKey()));
+    }
+
+    @Test
+    void testPinnedInstanceIsShared() {
+        VaultCache cache = new VaultCache(MAX_WEIGHT);
+        Vault open = vault(1);
+        Vault other = vault(1);
+
+        cache.pin(open);
+
+        assertSame(open, cache.pin(other), "Only one instance should be pinned per key");
+        assertSame(open, cache.putIfAbsent(other));
+        cache.put(other);
+        assertSame(open, cache.get(open.getKey()), "Another instance shouldn't replace the pinned vault");
+    }
+
+    @Test
+    void testUnpinKeepsVaultCached() {
+        VaultCache cache = new VaultCache(MAX_WEIGHT);
+        Vault open = vault(1);
+
+        cache.pin(open);
+        cache.unpin(vault(1));
+        assertSame(open, cache.getPinned(open.getKey()), "Only the pinned instance can unpin itself");
+
+        cache.unpin(open);
+        assertNull(cache.getPinned(open.getKey()));
+        assertSame(open, cache.get(open.getKey()), "An unpinned vault should stay cached");
+    }
+
+    @Test
+    void testInvalidateLeavesPinnedVaults() {
+        VaultCache cache = new VaultCache(MAX_WEIGHT);
+        Vault open = vault(1);
+        Vault closed = vault(2);
+
+        cache.put(open);
+        cache.put(closed);
+        cache.pin(open);
+        cache.invalidate(owner);
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+        assertNull(cache.get(closed.getKey()));
+        assertSame(open, cache.get(open.getKey()));
+    }
+
+    @Test
+    void testDisabledCacheStoresNothing() {
+        VaultCache cache = new VaultCache(0);
+
+        cache.put(vault(1));
+
+        assertEquals(0, cache.size());
+    }
+
+    private Vault vault(int id) {
+        Vault vault = new Vault(owner, id);
+        vault.setStoredBytes(VAULT_BYTES);
+        return vault;
+    }
+}
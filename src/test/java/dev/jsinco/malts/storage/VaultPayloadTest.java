@@ -0,0 +1,77 @@
+package dev.jsinco.malts.storage;
+
+import dev.jsinco.malts.enums.Compression;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VaultPayloadTest {
+
+    @Test
+    void testRoundTripsEveryCompression() {
+        byte[] items = sampleVault(54);
+        for (Compression compression : Compression.values()) {
+            byte[] payload = VaultPayload.encode(items, compression);
+            assertTrue(VaultPayload.isPayload(payload));
+            assertArrayEquals(items, VaultPayload.decode(payload), "Round trip failed for " + compression);
+        }
+    }
+
+    @Test
+    void testRoundTripsEmptyVault() {
+        byte[] payload = VaultPayload.encode(new byte[0], Compression.DEFLATE);
+        assertArrayEquals(new byte[0], VaultPayload.decode(payload));
+    }
+
+    @Test
+    void testFallsBackToNoCompressionWhenItDoesNotHelp() {
+        byte[] random = new byte[256];
+        new Random(1).nextBytes(random);
+
+        byte[] payload = VaultPayload.encode(random, Compression.DEFLATE);
+        assertEquals(Compression.NONE.getId(), payload[3]);
+        assertArrayEquals(random, VaultPayload.decode(payload));
+    }
+
+    @Test
+    void testRejectsLegacyAndNewerPayloads() {
+        byte[] legacy = Base64.getEncoder().encode(sampleVault(9));
+        assertFalse(VaultPayload.isPayload(legacy));
+        assertThrows(IllegalArgumentException.class, () -> VaultPayload.decode(legacy));
+
+        byte[] newer = VaultPayload.encode(sampleVault(9), Compression.NONE);
+        newer[2] = VaultPayload.VERSION + 1;
+        assertThrows(IllegalArgumentException.class, () -> VaultPayload.decode(newer));
+    }
+
+    /**
+     * Sample bytes for round trips. Not representative of real vaults for size comparisons,
+     * {@code ItemStack.serializeItemsAsBytes} already compresses each item, see {@code VaultPayloadBenchmark}.
+     */
+    private static byte[] sampleVault(int slots) {
+        String[] materials = {"minecraft:diamond", "minecraft:cobblestone", "minecraft:oak_log", "minecraft:iron_ingot", "minecraft:netherite_sword"};
+        Random random = new Random(42);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(slots);
+        for (int i = 0; i < slots; i++) {
+            if (random.nextInt(5) == 0) {
+                out.write(0); // Empty slot
+                continue;
+            }
+            String material = materials[random.nextInt(materials.length)];
+            String compound = "{DataVersion:4189,id:\"" + material + "\",count:" + (1 + random.nextInt(64)) + "b";
+            if (material.endsWith("sword")) {
+                compound += ",components:{\"minecraft:enchantments\":{levels:{\"minecraft:sharpness\":5,\"minecraft:unbreaking\":3}},\"minecraft:damage\":" + random.nextInt(2031) + "}";
+            }
+            byte[] bytes = (compound + "}").getBytes(StandardCharsets.UTF_8);
+            out.write(bytes.length);
+            out.writeBytes(bytes);
+        }
+        return out.toByteArray();
+    }
+}
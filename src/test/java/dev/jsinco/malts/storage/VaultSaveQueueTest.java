@@ -0,0 +1,180 @@
+package dev.jsinco.malts.storage;
+
+import dev.jsinco.malts.Malts;
+import dev.jsinco.malts.obj.Vault;
+import dev.jsinco.malts.obj.VaultSnapshot;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.MockBukkitExtension;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockBukkitExtension.class)
+class VaultSaveQueueTest {
+
+    // Long enough that the scheduled flush never runs during a test
+    private static final long WINDOW_MILLIS = 60_000;
+
+    UUID owner;
+    List<Collection<VaultSnapshot>> batches;
+    List<CompletableFuture<Void>> writes;
+
+    @BeforeEach
+    void setUp() {
+        MockBukkit.load(Malts.class);
+        this.owner = UUID.randomUUID();
+        this.batches = new ArrayList<>();
+        this.writes = new ArrayList<>();
+    }
+
+    @Test
+    void testCoalescesSavesOfSameVault() {
+        VaultSaveQueue queue = new VaultSaveQueue(WINDOW_MILLIS, this::write);
+        Vault vault = new Vault(owner, 1);
+
+        CompletableFuture<Void> first = queue.enqueue(vault.snapshot());
+        vault.getInventory().setItem(0, new ItemStack(Material.DIAMOND));
+        VaultSnapshot latest = vault.snapshot();
+        CompletableFuture<Void> second = queue.enqueue(latest);
+
+        assertSame(first, second, "Both saves should share one future");
+        assertEquals(1, queue.size());
+        assertEquals(1, queue.getCoalesced());
+        assertTrue(batches.isEmpty(), "Nothing should be written before the window ends");
+
+        queue.flush();
+
+        assertEquals(1, batches.size());
+        assertEquals(List.of(latest), List.copyOf(batches.getFirst()), "Only the latest snapshot should be written");
+        writes.getFirst().complete(null);
+        assertTrue(first.isDone());
+    }
+
+    @Test
+    void testBatchesVaultsInWindow() {
+        VaultSaveQueue queue = new VaultSaveQueue(WINDOW_MILLIS, this::write);
+
+        queue.enqueue(new Vault(owner, 1).snapshot());
+        queue.enqueue(new Vault(owner, 2).snapshot());
+        queue.enqueue(new Vault(UUID.randomUUID(), 1).snapshot());
+        queue.flush();
+
+        assertEquals(1, batches.size());
+        assertEquals(3, batches.getFirst().size());
+        assertEquals(0, queue.getCoalesced());
+    }
+
+    @Test
+    void testBatchesAreWrittenInOrder() {
+        VaultSaveQueue queue = new VaultSaveQueue(0, this::write);
+        Vault vault = new Vault(owner, 1);
+
+        CompletableFuture<Void> first = queue.enqueue(vault.snapshot());
+        CompletableFuture<Void> second = queue.enqueue(vault.snapshot());
+
+        assertNotSame(first, second, "A save made after the batch was written shouldn't be coalesced into it");
+        assertEquals(1, batches.size(), "The second batch should wait for the first to be written");
+
+        writes.getFirst().complete(null);
+        assertTrue(first.isDone());
+        assertEquals(2, batches.size());
+        assertFalse(second.isDone());
+
+        writes.get(1).complete(null);
+        assertTrue(second.isDone());
+    }
+
+    @Test
+    void testFailedBatchDoesNotBlockNextBatch() {
+        VaultSaveQueue queue = new VaultSaveQueue(0, this::write);
+
+        CompletableFuture<Void> first = queue.enqueue(new Vault(owner, 1).snapshot());
+        CompletableFuture<Void> second = queue.enqueue(new Vault(owner, 2).snapshot());
+        writes.getFirst().completeExceptionally(new IllegalStateException("Database is down"));
+
+        assertTrue(first.isCompletedExceptionally());
+        assertEquals(2, batches.size(), "The next batch should still be written");
+        writes.get(1).complete(null);
+        assertTrue(second.isDone());
+        assertFalse(second.isCompletedExceptionally());
+    }
+
+    @Test
+    void testFailedWriteFailsEverySaveInBatch() {
+        VaultSaveQueue queue = new VaultSaveQueue(WINDOW_MILLIS, this::write);
+        Vault vault = new Vault(owner, 1);
+
+        CompletableFuture<Void> first = queue.enqueue(vault.snapshot());
+        CompletableFuture<Void> coalesced = queue.enqueue(vault.snapshot());
+        CompletableFuture<Void> other = queue.enqueue(new Vault(owner, 2).snapshot());
+        CompletableFuture<Void> flushed = queue.flush();
+        CompletableFuture<Void> ownerWritten = queue.awaitOwner(owner);
+        writes.getFirst().completeExceptionally(new IllegalStateException("Database is down"));
+
+        assertTrue(first.isCompletedExceptionally(), "A failed write shouldn't be reported as saved");
+        assertTrue(coalesced.isCompletedExceptionally());
+        assertTrue(other.isCompletedExceptionally());
+        assertTrue(flushed.isCompletedExceptionally(), "Flushing should report the failed write");
+        assertTrue(ownerWritten.isCompletedExceptionally());
+    }
+
+    @Test
+    void testAwaitOwnerOnlyWaitsForOwnSaves() {
+        VaultSaveQueue queue = new VaultSaveQueue(0, this::write);
+        UUID other = UUID.randomUUID();
+
+        queue.enqueue(new Vault(other, 1).snapshot());
+
+        assertTrue(queue.awaitOwner(owner).isDone(), "Another owner's write shouldn't be waited on");
+        CompletableFuture<Void> otherWritten = queue.awaitOwner(other);
+        assertFalse(otherWritten.isDone());
+
+        writes.getFirst().complete(null);
+        assertTrue(otherWritten.isDone());
+        assertTrue(queue.awaitOwner(other).isDone());
+    }
+
+    @Test
+    void testAwaitOwnerFlushesPendingSaves() {
+        VaultSaveQueue queue = new VaultSaveQueue(WINDOW_MILLIS, this::write);
+
+        queue.enqueue(new Vault(owner, 1).snapshot());
+        CompletableFuture<Void> written = queue.awaitOwner(owner);
+
+        assertEquals(1, batches.size(), "Pending saves should be written before the owner is read");
+        assertEquals(0, queue.size());
+        assertFalse(written.isDone());
+        writes.getFirst().complete(null);
+        assertTrue(written.isDone());
+    }
+
+    @Test
+    void testDiscardDropsPendingSave() {
+        VaultSaveQueue queue = new VaultSaveQueue(WINDOW_MILLIS, this::write);
+        Vault vault = new Vault(owner, 1);
+
+        CompletableFuture<Void> save = queue.enqueue(vault.snapshot());
+        queue.discard(vault.getKey());
+        queue.flush();
+
+        assertTrue(save.isDone());
+        assertTrue(batches.isEmpty());
+    }
+
+    private CompletableFuture<Void> write(Collection<VaultSnapshot> batch) {
+        CompletableFuture<Void> write = new CompletableFuture<>();
+        batches.add(batch);
+        writes.add(write);
+        return write;
+    }
+}